@@ -0,0 +1,142 @@
+package com.msh.starter.benchmarks;
+
+import com.msh.frame.interfaces.IdGenerateable;
+import com.msh.starter.id.generate.abstracts.AbstractDateIdGenerate;
+import com.msh.starter.id.generate.instance.DefaultIdGenerate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * id生成器性能测试
+ * 线程数由IdGenerateBenchmarkRunner指定(1,4,16,64)
+ * ---------------------------------------------------------------
+ * getUniqueID 吞吐量和延迟分布(Throughput, SampleTime)
+ * getUniqueIDChecked 记录生成的id，每轮结束后检查所有线程的id是否重复
+ * ---------------------------------------------------------------
+ * generator:
+ * default  DefaultIdGenerate
+ * striped  DefaultIdGenerate 分段模式(8个分段)
+ * date     DefaultDateIdGenerate 的父类AbstractDateIdGenerate 默认参数(每秒10000000个id)
+ *          DefaultDateIdGenerate 每秒只能生成1000个id，压测时很快超出当天可借用的秒数，
+ *          所以使用类注释中测试数据对应的默认参数
+ * 每轮重新创建生成器，避免上一轮借用的时间影响下一轮
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGenerateBenchmark {
+    /**
+     * 每个线程每轮最多记录的id数
+     */
+    private static final int MAX_RECORD_PER_THREAD = 1 << 17;
+
+    @Param({"default", "striped", "date"})
+    private String generator;
+
+    private IdGenerateable idGenerateable;
+
+    /**
+     * 各线程记录的id
+     */
+    private final List<IdRecorder> recorders = new CopyOnWriteArrayList<>();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        switch (generator){
+            case "striped":
+                idGenerateable = new DefaultIdGenerate(3);
+                break;
+            case "date":
+                idGenerateable = new AbstractDateIdGenerate() {
+                    @Override
+                    protected Integer getServerId() {
+                        return 1;
+                    }
+                };
+                break;
+            default:
+                idGenerateable = new DefaultIdGenerate();
+                break;
+        }
+    }
+
+    /**
+     * 检查本轮所有线程生成的id是否重复
+     */
+    @TearDown(Level.Iteration)
+    public void checkUnique() {
+        int total = 0;
+        for(IdRecorder recorder : recorders){
+            total += recorder.size;
+        }
+        if(0 == total){
+            return;
+        }
+        long[] all = new long[total];
+        int index = 0;
+        for(IdRecorder recorder : recorders){
+            System.arraycopy(recorder.ids, 0, all, index, recorder.size);
+            index += recorder.size;
+            recorder.size = 0;
+        }
+        Arrays.sort(all);
+        for(int i = 1; i < all.length; i++){
+            if(all[i] == all[i - 1]){
+                throw new IllegalStateException("duplicate id " + all[i] + " generator " + generator);
+            }
+        }
+    }
+
+    @Benchmark
+    public long getUniqueID() {
+        return idGenerateable.getUniqueID();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public long getUniqueIDChecked(IdRecorder recorder) {
+        long id = idGenerateable.getUniqueID();
+        recorder.record(id);
+        return id;
+    }
+
+    /**
+     * 每个线程记录生成的id
+     */
+    @State(Scope.Thread)
+    public static class IdRecorder {
+        private long[] ids;
+        private int size;
+
+        @Setup(Level.Trial)
+        public void setUp(IdGenerateBenchmark benchmark) {
+            ids = new long[MAX_RECORD_PER_THREAD];
+            benchmark.recorders.add(this);
+        }
+
+        private void record(long id) {
+            if(size < ids.length){
+                ids[size++] = id;
+            }
+        }
+    }
+}
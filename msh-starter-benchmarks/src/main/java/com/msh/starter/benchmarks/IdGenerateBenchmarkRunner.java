@@ -0,0 +1,38 @@
+package com.msh.starter.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 分别使用1,4,16,64个线程运行IdGenerateBenchmark
+ * 开启gc profiler统计内存分配速率
+ * 结果输出到 id-generate-线程数.json，可用于升级前后对比
+ * 参数: 需要运行的线程数，不传时运行全部
+ */
+public class IdGenerateBenchmarkRunner {
+    private static final int[] DEFAULT_THREADS = {1, 4, 16, 64};
+
+    public static void main(String[] args) throws RunnerException {
+        int[] threadsArray = DEFAULT_THREADS;
+        if(args.length > 0){
+            threadsArray = new int[args.length];
+            for(int i = 0; i < args.length; i++){
+                threadsArray[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for(int threads : threadsArray){
+            Options options = new OptionsBuilder()
+                    .include(IdGenerateBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("id-generate-" + threads + ".json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -1,10 +1,11 @@
 package com.msh.starter.common.base;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONObject;
 import com.msh.frame.client.base.BasePO;
 import com.msh.frame.client.base.BaseQO;
 import com.msh.frame.client.common.CommonResult;
+import com.msh.frame.interfaces.ICache;
+import com.msh.starter.common.cache.EarlyRefreshEntry;
+import com.msh.starter.common.cache.QueryKeyBuilder;
 
 import java.util.List;
 
@@ -13,6 +14,8 @@ import java.util.List;
  * 带缓存的serviceImpl
  * 缓存单条信息和list信息，分页信息都缓存
  * list缓存有时效，如果需要实时信息就不要使用此类
+ * list、listOne、count缓存接近过期时按概率提前刷新，避免同时过期后集中查询数据库
+ * 缓存key为查询条件的128位哈希，count的key不包含分页字段
  * @param <T>
  * @param <Q>
  */
@@ -35,21 +38,25 @@ public abstract class BaseAllCacheServiceImpl<T extends BasePO, Q extends BaseQO
      * 默认为3分钟
      */
     private long expireSecondTimeForList=60L*3L;
+    /**
+     * 提前刷新系数
+     * 大于1提前刷新更积极，小于等于0关闭提前刷新
+     * 默认1
+     */
+    private double earlyRefreshBeta=1.0D;
+
     @Override
     public CommonResult<List<T>> list(Q param) {
-        String key=LIST_PREFIX+param.toString();
-        CommonResult<List<T>> commonResult= (CommonResult<List<T>>) getCache().get(key);
+        QueryKeyBuilder.QueryKey queryKey=QueryKeyBuilder.build(param);
+        String key=LIST_PREFIX+queryKey.getKey();
+        CommonResult<List<T>> commonResult=getListCache(key);
         if(null==commonResult){
+            long start=System.currentTimeMillis();
             commonResult=super.list(param);
             if (commonResult.isSuccess()){
-                getCache().put(key,commonResult,expireSecondTimeForList);
-                String paramStr = JSON.toJSONString(param);
-                JSONObject jsonObject = JSON.parseObject(paramStr);
-                jsonObject.remove("firstRow");
-                jsonObject.remove("currentPage");
-                jsonObject.remove("pageSize");
-                String countKey = COUNT_PREFIX + jsonObject.toJSONString();
-                getCache().put(countKey,CommonResult.successReturn(commonResult.getCount()),expireSecondTimeForList);
+                long delta=System.currentTimeMillis()-start;
+                putListCache(key,commonResult,delta);
+                putListCache(COUNT_PREFIX+queryKey.getKeyWithoutPaging(),CommonResult.successReturn(commonResult.getCount()),delta);
             }
         }
         return commonResult;
@@ -57,12 +64,13 @@ public abstract class BaseAllCacheServiceImpl<T extends BasePO, Q extends BaseQO
 
     @Override
     public CommonResult listOne(Q param) {
-        String key=LIST_ONE_PREFIX+param.toString();
-        CommonResult<T> commonResult= (CommonResult<T>) getCache().get(key);
+        String key=LIST_ONE_PREFIX+QueryKeyBuilder.build(param).getKey();
+        CommonResult<T> commonResult=getListCache(key);
         if(null == commonResult){
+            long start=System.currentTimeMillis();
             commonResult=super.listOne(param);
             if(commonResult.isSuccess()){
-                getCache().put(key,commonResult,expireSecondTimeForList);
+                putListCache(key,commonResult,System.currentTimeMillis()-start);
             }
         }
         return commonResult;
@@ -70,35 +78,63 @@ public abstract class BaseAllCacheServiceImpl<T extends BasePO, Q extends BaseQO
 
     @Override
     public CommonResult<Integer> count(Q param) {
-        String key=COUNT_PREFIX+param.toString();
-        CommonResult<Integer> commonResult= (CommonResult<Integer>) getCache().get(key);
+        String key=COUNT_PREFIX+QueryKeyBuilder.build(param).getKeyWithoutPaging();
+        CommonResult<Integer> commonResult=getListCache(key);
         if(null==commonResult){
+            long start=System.currentTimeMillis();
             commonResult=super.count(param);
             if(commonResult.isSuccess()){
-                getCache().put(key,commonResult,expireSecondTimeForList);
+                putListCache(key,commonResult,System.currentTimeMillis()-start);
+            }
+        }
+        return commonResult;
+    }
+
+    /**
+     * 获取list、listOne、count缓存
+     * 兼容没有查询耗时的旧缓存值
+     * @param key
+     * @return 缓存不存在或需要提前刷新时返回null
+     */
+    private <R extends CommonResult> R getListCache(String key){
+        Object value=((ICache)getCache()).get(key);
+        if(value instanceof EarlyRefreshEntry){
+            EarlyRefreshEntry entry=(EarlyRefreshEntry) value;
+            if(entry.shouldRefresh(earlyRefreshBeta)){
+                return null;
             }
+            return (R) entry.getValue();
         }
-        return super.count(param);
+        return (R) value;
+    }
+
+    /**
+     * 写入list、listOne、count缓存
+     * @param key
+     * @param commonResult
+     * @param delta 查询耗时毫秒数
+     */
+    private void putListCache(String key, CommonResult commonResult, long delta){
+        ((ICache)getCache()).put(key,new EarlyRefreshEntry(commonResult,delta,expireSecondTimeForList),expireSecondTimeForList);
     }
 
     public void setExpireSecondTimeForList(long expireSecondTimeForList) {
         this.expireSecondTimeForList = expireSecondTimeForList;
     }
 
+    public void setEarlyRefreshBeta(double earlyRefreshBeta) {
+        this.earlyRefreshBeta = earlyRefreshBeta;
+    }
+
     @Override
     public void clearListCache(Q baseQO) {
-        getCache().remove(LIST_PREFIX+baseQO.toString());
-        String paramStr = JSON.toJSONString(baseQO);
-        JSONObject jsonObject = JSON.parseObject(paramStr);
-        jsonObject.remove("firstRow");
-        jsonObject.remove("currentPage");
-        jsonObject.remove("pageSize");
-        String countKey = COUNT_PREFIX + jsonObject.toJSONString();
-        getCache().remove(COUNT_PREFIX + baseQO.toString());
+        QueryKeyBuilder.QueryKey queryKey=QueryKeyBuilder.build(baseQO);
+        getCache().remove(LIST_PREFIX+queryKey.getKey());
+        getCache().remove(COUNT_PREFIX+queryKey.getKeyWithoutPaging());
     }
 
     @Override
     public void clearListOneCache(Q baseQO) {
-        getCache().remove(LIST_ONE_PREFIX+baseQO.toString());
+        getCache().remove(LIST_ONE_PREFIX+QueryKeyBuilder.build(baseQO).getKey());
     }
 }
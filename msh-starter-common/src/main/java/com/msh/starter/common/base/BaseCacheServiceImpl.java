@@ -7,14 +7,25 @@ import com.msh.frame.client.base.BaseServiceImpl;
 import com.msh.frame.client.common.CommonResult;
 import com.msh.frame.interfaces.ICache;
 import com.msh.frame.interfaces.ICacheManager;
+import com.msh.starter.common.cache.IBloomFilter;
+import com.msh.starter.common.cache.IBloomFilterFactory;
+import com.msh.starter.common.cache.ILoadingMarker;
+import com.msh.starter.common.cache.SingleFlight;
 import com.msh.starter.common.instance.ApplicationContextUtil;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 
 /**
  * @author shihu
  * 带缓存的serviceImpl
  * 只缓存单个一条信息，不缓存list信息
+ * 同一个id缓存未命中时，本服务内只有一个线程查询数据库，其他线程等待查询结果
+ * 存在ILoadingMarker时，多个服务节点只有一个节点查询数据库，其他节点等待loadingMarkerWaitMillis毫秒后再查询缓存
+ * 开启布隆过滤器时，一定不存在的id不查询数据库也不缓存空值
  * @param <T>
  * @param <Q>
  */
@@ -39,6 +50,35 @@ public abstract class BaseCacheServiceImpl<T extends BasePO, Q extends BaseQO> e
      * 暂时不建议自己设置时间
      */
     final private static long DEFAULT_GET_EMPTY_EXPIRE_SECOND_TIME=60;
+    /**
+     * 等待其他节点加载时查询缓存的间隔毫秒数
+     */
+    final private static long LOADING_WAIT_INTERVAL_MILLIS=20L;
+
+    private final SingleFlight<String,CommonResult> getSingleFlight=new SingleFlight<>();
+    private volatile ILoadingMarker loadingMarker;
+    private volatile boolean loadingMarkerResolved;
+    /**
+     * 加载标记过期毫秒数，应大于一次数据库查询的时间
+     * 默认3秒
+     */
+    private long loadingMarkerExpireMillis=3000L;
+    /**
+     * 没有获取到加载标记时等待其他节点写入缓存的毫秒数，超时后自己查询数据库
+     * 默认200毫秒
+     */
+    private long loadingMarkerWaitMillis=200L;
+    /**
+     * 布隆过滤器预计数据量，大于0时开启布隆过滤器
+     */
+    private long bloomFilterExpectedInsertions;
+    /**
+     * 布隆过滤器误判率
+     * 默认1%
+     */
+    private double bloomFilterFpp=0.01D;
+    private volatile IBloomFilter bloomFilter;
+    private volatile boolean bloomFilterResolved;
 
     @Override
     public CommonResult<T> get(Q param) {
@@ -46,6 +86,40 @@ public abstract class BaseCacheServiceImpl<T extends BasePO, Q extends BaseQO> e
         CommonResult<T> commonResult=getCache().get(key);
         //无需使用haskey判断，因为返回结果已经被CommonResult包装，只要haskey,就不会返回null (redis的value可以存null)
         if(null==commonResult){
+            if(notExist(param.getId())){
+                return CommonResult.successReturn(null);
+            }
+            commonResult=getSingleFlight.execute(key,()->loadForGet(key,param));
+        }
+        return commonResult;
+    }
+
+    /**
+     * get缓存未命中时查询数据库并写入缓存
+     * @param key
+     * @param param
+     * @return
+     */
+    private CommonResult<T> loadForGet(String key, Q param){
+        //等待上一次加载的线程可能已经写入缓存
+        CommonResult<T> commonResult=getCache().get(key);
+        if(null!=commonResult){
+            return commonResult;
+        }
+        ILoadingMarker marker=getLoadingMarker();
+        String markerKey=null;
+        boolean marked=false;
+        if(null!=marker){
+            markerKey=this.getClass().getName()+":"+key;
+            marked=marker.tryMark(markerKey,loadingMarkerExpireMillis);
+            if(!marked){
+                commonResult=waitForLoading(key);
+                if(null!=commonResult){
+                    return commonResult;
+                }
+            }
+        }
+        try {
             commonResult=super.get(param);
             if(commonResult.isSuccess()){
                 if(null==commonResult.getResult()){
@@ -54,6 +128,128 @@ public abstract class BaseCacheServiceImpl<T extends BasePO, Q extends BaseQO> e
                     getCache().put(key,commonResult,expireSecondTimeForGet);
                 }
             }
+        }finally {
+            if(marked){
+                marker.unmark(markerKey);
+            }
+        }
+        return commonResult;
+    }
+
+    /**
+     * 等待其他节点加载并写入缓存
+     * @param key
+     * @return 超时返回null
+     */
+    private CommonResult<T> waitForLoading(String key){
+        long deadline=System.currentTimeMillis()+loadingMarkerWaitMillis;
+        while (System.currentTimeMillis()<deadline){
+            try {
+                Thread.sleep(LOADING_WAIT_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            CommonResult<T> commonResult=getCache().get(key);
+            if(null!=commonResult){
+                return commonResult;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 开启布隆过滤器
+     * 需要调用initBloomFilter写入全部已存在的id后才生效，生效后get查询一定不存在的id时不查询数据库也不缓存空值
+     * @param expectedInsertions 预计数据量
+     * @param fpp 误判率
+     */
+    public void setBloomFilter(long expectedInsertions, double fpp) {
+        this.bloomFilterExpectedInsertions = expectedInsertions;
+        this.bloomFilterFpp = fpp;
+        this.bloomFilterResolved = false;
+    }
+
+    /**
+     * 写入全部已存在的id并标记布隆过滤器初始化完成
+     * 多个服务节点只需要一个节点调用
+     * @param ids
+     */
+    public void initBloomFilter(Collection<?> ids) {
+        IBloomFilter filter=getBloomFilter();
+        if(null==filter){
+            throw new IllegalStateException("bloom filter is not enabled");
+        }
+        filter.init(ids);
+    }
+
+    /**
+     * 布隆过滤器判断id一定不存在
+     * @param id
+     * @return
+     */
+    private boolean notExist(Object id){
+        IBloomFilter filter=getBloomFilter();
+        return null!=filter && null!=id && !filter.mightContain(id);
+    }
+
+    private IBloomFilter getBloomFilter(){
+        if(!bloomFilterResolved){
+            if(bloomFilterExpectedInsertions>0){
+                IBloomFilterFactory factory=ApplicationContextUtil.getBeanIfAvailable(IBloomFilterFactory.class);
+                bloomFilter=null==factory?null:factory.create(this.getClass().getName(),bloomFilterExpectedInsertions,bloomFilterFpp);
+            }else {
+                bloomFilter=null;
+            }
+            bloomFilterResolved=true;
+        }
+        return bloomFilter;
+    }
+
+    private ILoadingMarker getLoadingMarker(){
+        if(!loadingMarkerResolved){
+            loadingMarker=ApplicationContextUtil.getBeanIfAvailable(ILoadingMarker.class);
+            loadingMarkerResolved=true;
+        }
+        return loadingMarker;
+    }
+
+    @Override
+    public CommonResult<Boolean> insert(T param) {
+        Object id=param.getId();
+        IBloomFilter filter=getBloomFilter();
+        if(null!=filter && null!=id){
+            filter.put(id);
+        }
+        CommonResult<Boolean> commonResult=super.insert(param);
+        //数据库生成的id插入后才有值
+        if(null!=filter && null==id && null!=param.getId()){
+            filter.put(param.getId());
+        }
+        return commonResult;
+    }
+
+    @Override
+    public CommonResult<Boolean> insertCollection(Collection param) {
+        IBloomFilter filter=getBloomFilter();
+        if(null==filter){
+            return super.insertCollection(param);
+        }
+        List<Object> ids=new ArrayList<>(param.size());
+        for(Object o : param){
+            Object id=((T) o).getId();
+            if(null!=id){
+                ids.add(id);
+            }
+        }
+        filter.putAll(ids);
+        CommonResult<Boolean> commonResult=super.insertCollection(param);
+        if(ids.size()<param.size()){
+            ids.clear();
+            for(Object o : param){
+                ids.add(((T) o).getId());
+            }
+            filter.putAll(ids);
         }
         return commonResult;
     }
@@ -87,4 +283,17 @@ public abstract class BaseCacheServiceImpl<T extends BasePO, Q extends BaseQO> e
     public void setExpireSecondTimeForGet(long expireSecondTimeForGet) {
         this.expireSecondTimeForGet = expireSecondTimeForGet;
     }
+
+    public void setLoadingMarker(ILoadingMarker loadingMarker) {
+        this.loadingMarker = loadingMarker;
+        this.loadingMarkerResolved = true;
+    }
+
+    public void setLoadingMarkerExpireMillis(long loadingMarkerExpireMillis) {
+        this.loadingMarkerExpireMillis = loadingMarkerExpireMillis;
+    }
+
+    public void setLoadingMarkerWaitMillis(long loadingMarkerWaitMillis) {
+        this.loadingMarkerWaitMillis = loadingMarkerWaitMillis;
+    }
 }
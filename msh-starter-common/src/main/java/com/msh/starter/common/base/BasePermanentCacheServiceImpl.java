@@ -1,17 +1,27 @@
 package com.msh.starter.common.base;
 
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONObject;
 import com.msh.frame.client.base.BasePO;
 import com.msh.frame.client.base.BaseQO;
 import com.msh.frame.client.base.BaseServiceImpl;
 import com.msh.frame.client.common.CommonResult;
 import com.msh.frame.interfaces.ICache;
 import com.msh.frame.interfaces.ICacheManager;
+import com.msh.starter.common.cache.CacheRefreshExecutor;
+import com.msh.starter.common.cache.EarlyRefreshEntry;
+import com.msh.starter.common.cache.HotQueryTracker;
+import com.msh.starter.common.cache.IBloomFilter;
+import com.msh.starter.common.cache.IBloomFilterFactory;
+import com.msh.starter.common.cache.QueryKeyBuilder;
 import com.msh.starter.common.instance.ApplicationContextUtil;
 import io.swagger.annotations.ApiModelProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author shihu
@@ -20,10 +30,20 @@ import java.util.*;
  * 一些数量少且修改非常少的数据可以使用
  * 虽然是永久缓存，但还是设置了过期时间30天
  * 防止不使用之后redis一直占用内存
+ * ---------------------------------------------------------------
+ * 开启refreshAhead后记录查询次数最多的list、listOne、count查询条件，
+ * 修改数据清空缓存后在后台线程重新查询这些条件并写入缓存，
+ * 读取到剩余时间小于refreshAheadSecond的缓存时在后台线程重新查询，用户查询基本不会未命中
+ * 后台查询期间本服务再次修改数据时，查询结果不写入缓存，
+ * 修改数据前和事务结束后更新缓存中共享的代数，查询前后代数不同时不写入缓存，其他服务节点修改数据时也不会写回旧数据
+ * 查询条件只在第一次记录时复制一次，后台刷新使用该副本
+ * ---------------------------------------------------------------
+ * 开启布隆过滤器时，get查询一定不存在的id不查询数据库也不缓存空值
  * @param <T>
  * @param <Q>
  */
 public abstract class BasePermanentCacheServiceImpl<T extends BasePO, Q extends BaseQO> extends BaseServiceImpl<T,Q> {
+    private static Logger LOGGER = LoggerFactory.getLogger(BasePermanentCacheServiceImpl.class);
     protected ICache<String,CommonResult> cache;
     /**
      * 单条查询缓存
@@ -41,6 +61,10 @@ public abstract class BasePermanentCacheServiceImpl<T extends BasePO, Q extends
      * 查询条数缓存
      */
     final private static String COUNT_PREFIX="count:";
+    /**
+     * list、listOne、count缓存的代数，开启refreshAhead时修改数据前后更新
+     */
+    final private static String GENERATION_KEY="list_generation";
     /**
      *  非空值过期时间
      */
@@ -49,12 +73,62 @@ public abstract class BasePermanentCacheServiceImpl<T extends BasePO, Q extends
      * 空值过期时间
      */
     final private static long NULL_EXPIRE_SECOND=300L;
+    final private static int TYPE_LIST=1;
+    final private static int TYPE_LIST_ONE=2;
+    final private static int TYPE_COUNT=3;
+
+    /**
+     * 是否开启后台提前刷新
+     * 默认关闭
+     */
+    private boolean refreshAhead=false;
+    /**
+     * 缓存剩余时间小于此秒数时后台刷新
+     * 默认1天
+     */
+    private long refreshAheadSecond=24*60*60L;
+    /**
+     * 清空缓存后重新查询的查询条件个数
+     * 默认100
+     */
+    private int refreshAheadQueryCount=100;
+    private volatile HotQueryTracker<Q> hotQueryTracker;
+    /**
+     * 清空缓存的次数，后台查询前后不同时不写入缓存
+     */
+    private final AtomicLong invalidateVersion=new AtomicLong();
+    /**
+     * 是否已经提交了清空缓存后的刷新任务，多次修改只执行一次刷新
+     */
+    private final AtomicBoolean refreshAllPending=new AtomicBoolean();
+    /**
+     * 正在后台刷新的key
+     */
+    private final Set<String> refreshingKeys=ConcurrentHashMap.newKeySet();
+    /**
+     * 查询条件复制失败后不再记录查询条件和后台刷新，不影响查询
+     */
+    private volatile boolean copyParamFailed=false;
+    /**
+     * 布隆过滤器预计数据量，大于0时开启布隆过滤器
+     */
+    private long bloomFilterExpectedInsertions;
+    /**
+     * 布隆过滤器误判率
+     * 默认1%
+     */
+    private double bloomFilterFpp=0.01D;
+    private volatile IBloomFilter bloomFilter;
+    private volatile boolean bloomFilterResolved;
 
     @Override
     public CommonResult<T> get(Q param) {
         String key = GET_PREFIX+ param.getId();
         CommonResult commonResult=getCache().get(key);
         if(null==commonResult){
+            if(notExist(param.getId())){
+                return CommonResult.successReturn(null);
+            }
             commonResult=super.get(param);
             if(commonResult.isSuccess()){
                 if(null!=commonResult.getResult()){
@@ -72,7 +146,9 @@ public abstract class BasePermanentCacheServiceImpl<T extends BasePO, Q extends
         String key = GET_PREFIX+ param.getId();
         getCache().remove(key);
         clearListCountCache();
-        return super.update(param);
+        CommonResult<Boolean> commonResult=super.update(param);
+        afterWrite();
+        return commonResult;
     }
 
     @Override
@@ -80,7 +156,9 @@ public abstract class BasePermanentCacheServiceImpl<T extends BasePO, Q extends
         String key = GET_PREFIX+ param.getId();
         getCache().remove(key);
         clearListCountCache();
-        return super.delete(param);
+        CommonResult<Boolean> commonResult=super.delete(param);
+        afterWrite();
+        return commonResult;
     }
 
     @Override
@@ -88,73 +166,291 @@ public abstract class BasePermanentCacheServiceImpl<T extends BasePO, Q extends
         String key=GET_PREFIX+param.getId();
         getCache().remove(key);
         clearListCountCache();
-        return super.insert(param);
+        Object id=param.getId();
+        IBloomFilter filter=getBloomFilter();
+        if(null!=filter && null!=id){
+            filter.put(id);
+        }
+        CommonResult<Boolean> commonResult=super.insert(param);
+        //数据库生成的id插入后才有值
+        if(null!=filter && null==id && null!=param.getId()){
+            filter.put(param.getId());
+        }
+        afterWrite();
+        return commonResult;
     }
 
     @Override
     public CommonResult<Boolean> insertCollection(Collection param) {
         Set<String> set=new HashSet<>();
+        List<Object> ids=new ArrayList<>(param.size());
         Iterator it=param.iterator();
         while(it.hasNext()){
             T t= (T) it.next();
             set.add(GET_PREFIX+t.getId());
+            if(null!=t.getId()){
+                ids.add(t.getId());
+            }
         }
         getCache().remove(set);
         clearListCountCache();
-        return super.insertCollection(param);
+        IBloomFilter filter=getBloomFilter();
+        if(null!=filter){
+            filter.putAll(ids);
+        }
+        CommonResult<Boolean> commonResult=super.insertCollection(param);
+        //数据库生成的id插入后才有值
+        if(null!=filter && ids.size()<param.size()){
+            ids.clear();
+            for(Object o : param){
+                ids.add(((T) o).getId());
+            }
+            filter.putAll(ids);
+        }
+        afterWrite();
+        return commonResult;
     }
 
 
     private void clearListCountCache(){
+        invalidateVersion.incrementAndGet();
+        updateGeneration();
         getCache().clearPrefix(LIST_PREFIX);
         getCache().clearPrefix(LIST_ONE_PREFIX);
         getCache().clearPrefix(COUNT_PREFIX);
     }
 
+    /**
+     * 修改数据后，事务结束时再次更新缓存代数，然后后台刷新
+     * 修改前开始、修改后才写入缓存的查询(包括其他服务节点)不会写回旧数据
+     */
+    private void afterWrite(){
+        if(!refreshAhead){
+            return;
+        }
+        CacheRefreshExecutor.runAfterCompletion(this::updateGeneration);
+        refreshAll();
+    }
+
+    /**
+     * 当前缓存代数，未开启refreshAhead时不读取
+     * @return
+     */
+    private Object getGeneration(){
+        return refreshAhead ? ((ICache)getCache()).get(GENERATION_KEY) : null;
+    }
+
+    private void updateGeneration(){
+        if(refreshAhead){
+            ((ICache)getCache()).put(GENERATION_KEY,UUID.randomUUID().toString(),NO_NULL_EXPIRE_SECOND);
+        }
+    }
+
     @Override
     public CommonResult<List<T>> list(Q param) {
-        String key = LIST_PREFIX + param.toString();
-        CommonResult<List<T>> commonResult= getCache().get(key);
+        QueryKeyBuilder.QueryKey queryKey=QueryKeyBuilder.build(param);
+        String key = LIST_PREFIX + queryKey.getKey();
+        CommonResult<List<T>> commonResult=getListCache(key,TYPE_LIST,param);
         if(null==commonResult){
-            commonResult = super.list(param);
-            if(commonResult.isSuccess()){
-                getCache().put(key,commonResult,NO_NULL_EXPIRE_SECOND);
-                String paramStr = JSON.toJSONString(param);
-                JSONObject jsonObject = JSON.parseObject(paramStr);
-                jsonObject.remove("firstRow");
-                jsonObject.remove("currentPage");
-                jsonObject.remove("pageSize");
-                String countKey = COUNT_PREFIX + jsonObject.toJSONString();
-                getCache().put(countKey,CommonResult.successReturn(commonResult.getCount()),NO_NULL_EXPIRE_SECOND);
-            }
+            commonResult=loadListCache(key,COUNT_PREFIX+queryKey.getKeyWithoutPaging(),TYPE_LIST,param,invalidateVersion.get(),getGeneration());
         }
         return commonResult;
     }
 
     @Override
     public CommonResult listOne(Q param) {
-        String key=LIST_ONE_PREFIX+param.toString();
-        CommonResult<T> commonResult= (CommonResult<T>) getCache().get(key);
+        String key=LIST_ONE_PREFIX+QueryKeyBuilder.build(param).getKey();
+        CommonResult<T> commonResult=getListCache(key,TYPE_LIST_ONE,param);
         if(null==commonResult){
-            commonResult=super.listOne(param);
-            if(commonResult.isSuccess()){
-                getCache().put(key,commonResult,NO_NULL_EXPIRE_SECOND);
-            }
+            commonResult=loadListCache(key,null,TYPE_LIST_ONE,param,invalidateVersion.get(),getGeneration());
         }
         return commonResult;
     }
 
     @Override
     public CommonResult<Integer> count(Q param) {
-        String key=COUNT_PREFIX+param.toString();
-        CommonResult<Integer> commonResult= (CommonResult<Integer>) getCache().get(key);
+        String key=COUNT_PREFIX+QueryKeyBuilder.build(param).getKeyWithoutPaging();
+        CommonResult<Integer> commonResult=getListCache(key,TYPE_COUNT,param);
         if(null == commonResult){
-            commonResult = super.count(param);
-            if(commonResult.isSuccess()){
-                getCache().put(key,commonResult,NO_NULL_EXPIRE_SECOND);
+            commonResult=loadListCache(key,null,TYPE_COUNT,param,invalidateVersion.get(),getGeneration());
+        }
+        return commonResult;
+    }
+
+    /**
+     * 获取list、listOne、count缓存
+     * 开启refreshAhead时记录查询条件，剩余时间不足时提交后台刷新
+     * 查询条件复制失败时只跳过记录和刷新
+     * @param key
+     * @param type
+     * @param param
+     * @return
+     */
+    private <R extends CommonResult> R getListCache(String key, int type, Q param){
+        HotQueryTracker.HotQuery<Q> query=null;
+        if(refreshAhead && !copyParamFailed){
+            query=getHotQueryTracker().record(key,type,()->copyParam(param));
+        }
+        Object value=((ICache)getCache()).get(key);
+        if(value instanceof EarlyRefreshEntry){
+            EarlyRefreshEntry entry=(EarlyRefreshEntry) value;
+            if(null!=query && entry.getExpireAt()-System.currentTimeMillis()<refreshAheadSecond*1000L){
+                refreshKey(key,type,query.getParam());
             }
+            return (R) entry.getValue();
         }
-        return super.count(param);
+        return (R) value;
+    }
+
+    /**
+     * 查询数据库并写入缓存
+     * list查询同时写入去掉分页条件的count缓存
+     * @param key
+     * @param countKey list查询时去掉分页条件的count缓存key，为null时计算
+     * @param type
+     * @param param
+     * @param version 查询前的清空缓存次数，写入前已经清空过缓存则不写入
+     * @param generation 查询前的缓存代数，写入前已经变化则不写入
+     * @return
+     */
+    private CommonResult loadListCache(String key, String countKey, int type, Q param, long version, Object generation){
+        long start=System.currentTimeMillis();
+        CommonResult commonResult;
+        if(TYPE_LIST==type){
+            commonResult=super.list(param);
+        }else if(TYPE_LIST_ONE==type){
+            commonResult=super.listOne(param);
+        }else {
+            commonResult=super.count(param);
+        }
+        if(!commonResult.isSuccess() || version!=invalidateVersion.get() || !Objects.equals(generation,getGeneration())){
+            return commonResult;
+        }
+        long delta=System.currentTimeMillis()-start;
+        ICache cache=getCache();
+        cache.put(key,new EarlyRefreshEntry(commonResult,delta,NO_NULL_EXPIRE_SECOND),NO_NULL_EXPIRE_SECOND);
+        if(TYPE_LIST==type){
+            if(null==countKey){
+                countKey=COUNT_PREFIX+QueryKeyBuilder.build(param).getKeyWithoutPaging();
+            }
+            cache.put(countKey,new EarlyRefreshEntry(CommonResult.successReturn(commonResult.getCount()),delta,NO_NULL_EXPIRE_SECOND),NO_NULL_EXPIRE_SECOND);
+        }
+        return commonResult;
+    }
+
+    /**
+     * 后台刷新单个即将过期的缓存
+     * @param param 记录时复制的查询条件
+     */
+    private void refreshKey(String key, int type, Q param){
+        if(!refreshingKeys.add(key)){
+            return;
+        }
+        long version=invalidateVersion.get();
+        Runnable done=()->refreshingKeys.remove(key);
+        CacheRefreshExecutor.getInstance().submit(()->{
+            try {
+                loadListCache(key,null,type,param,version,getGeneration());
+            }finally {
+                done.run();
+            }
+        },done);
+    }
+
+    /**
+     * 清空缓存后后台重新查询查询次数最多的查询条件
+     * 已经提交且未开始执行时不重复提交
+     */
+    private void refreshAll(){
+        if(!refreshAhead || !refreshAllPending.compareAndSet(false,true)){
+            return;
+        }
+        CacheRefreshExecutor.getInstance().submit(()->{
+            refreshAllPending.set(false);
+            long version=invalidateVersion.get();
+            Object generation=getGeneration();
+            for(HotQueryTracker.HotQuery<Q> query : getHotQueryTracker().top()){
+                if(version!=invalidateVersion.get()){
+                    return;
+                }
+                loadListCache(query.getKey(),null,query.getType(),query.getParam(),version,generation);
+            }
+        },()->refreshAllPending.set(false));
+    }
+
+    /**
+     * 复制查询条件，后台查询时不受调用方修改的影响
+     * 复制失败时返回null，记录日志后不再复制
+     */
+    private Q copyParam(Q param){
+        try {
+            return (Q) JSON.parseObject(JSON.toJSONString(param),param.getClass());
+        }catch (RuntimeException e){
+            if(!copyParamFailed){
+                copyParamFailed=true;
+                LOGGER.warn("copy param error, refresh ahead disabled, class:{}",param.getClass().getName(),e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 开启布隆过滤器
+     * 需要调用initBloomFilter写入全部已存在的id后才生效，生效后get查询一定不存在的id时不查询数据库也不缓存空值
+     * @param expectedInsertions 预计数据量
+     * @param fpp 误判率
+     */
+    public void setBloomFilter(long expectedInsertions, double fpp) {
+        this.bloomFilterExpectedInsertions = expectedInsertions;
+        this.bloomFilterFpp = fpp;
+        this.bloomFilterResolved = false;
+    }
+
+    /**
+     * 写入全部已存在的id并标记布隆过滤器初始化完成
+     * 多个服务节点只需要一个节点调用
+     * @param ids
+     */
+    public void initBloomFilter(Collection<?> ids) {
+        IBloomFilter filter=getBloomFilter();
+        if(null==filter){
+            throw new IllegalStateException("bloom filter is not enabled");
+        }
+        filter.init(ids);
+    }
+
+    /**
+     * 布隆过滤器判断id一定不存在
+     * @param id
+     * @return
+     */
+    private boolean notExist(Object id){
+        IBloomFilter filter=getBloomFilter();
+        return null!=filter && null!=id && !filter.mightContain(id);
+    }
+
+    private IBloomFilter getBloomFilter(){
+        if(!bloomFilterResolved){
+            if(bloomFilterExpectedInsertions>0){
+                IBloomFilterFactory factory=ApplicationContextUtil.getBeanIfAvailable(IBloomFilterFactory.class);
+                bloomFilter=null==factory?null:factory.create(this.getClass().getName(),bloomFilterExpectedInsertions,bloomFilterFpp);
+            }else {
+                bloomFilter=null;
+            }
+            bloomFilterResolved=true;
+        }
+        return bloomFilter;
+    }
+
+    private HotQueryTracker<Q> getHotQueryTracker(){
+        if(null==hotQueryTracker){
+            synchronized (this){
+                if(null==hotQueryTracker){
+                    hotQueryTracker=new HotQueryTracker<>(refreshAheadQueryCount);
+                }
+            }
+        }
+        return hotQueryTracker;
     }
 
     public ICache<String,CommonResult> getCache(){
@@ -164,4 +460,15 @@ public abstract class BasePermanentCacheServiceImpl<T extends BasePO, Q extends
         return cache;
     }
 
+    public void setRefreshAhead(boolean refreshAhead) {
+        this.refreshAhead = refreshAhead;
+    }
+
+    public void setRefreshAheadSecond(long refreshAheadSecond) {
+        this.refreshAheadSecond = refreshAheadSecond;
+    }
+
+    public void setRefreshAheadQueryCount(int refreshAheadQueryCount) {
+        this.refreshAheadQueryCount = refreshAheadQueryCount;
+    }
 }
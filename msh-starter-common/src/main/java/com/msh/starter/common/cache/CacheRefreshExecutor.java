@@ -0,0 +1,116 @@
+package com.msh.starter.common.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓存后台刷新共用的线程池
+ * 线程数和队列长度固定，队列满时丢弃任务，缓存在下次读取时再查询
+ * 存在事务时事务提交后再执行，防止读取到提交前的旧数据
+ */
+public class CacheRefreshExecutor {
+    private static Logger LOGGER = LoggerFactory.getLogger(CacheRefreshExecutor.class);
+    private static final boolean TRANSACTION_PRESENT = ClassUtils.isPresent(
+            "org.springframework.transaction.support.TransactionSynchronizationManager", CacheRefreshExecutor.class.getClassLoader());
+    private static final int THREAD_COUNT = 2;
+    private static final int QUEUE_SIZE = 1024;
+    private static volatile CacheRefreshExecutor instance;
+
+    private final ThreadPoolExecutor executor;
+
+    private CacheRefreshExecutor() {
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+            Thread thread = new Thread(r, "cache-refresh-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 获取共用的线程池，第一次调用时创建
+     * @return
+     */
+    public static CacheRefreshExecutor getInstance(){
+        if(null == instance){
+            synchronized (CacheRefreshExecutor.class){
+                if(null == instance){
+                    instance = new CacheRefreshExecutor();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 提交刷新任务
+     * 当前线程存在事务时，事务提交后提交任务，事务回滚时丢弃任务
+     * @param task
+     * @param rejected 任务被丢弃时执行
+     */
+    public void submit(Runnable task, Runnable rejected){
+        if(TRANSACTION_PRESENT && TransactionSupport.registerAfterCommit(() -> execute(task, rejected), rejected)){
+            return;
+        }
+        execute(task, rejected);
+    }
+
+    /**
+     * 当前线程存在事务时，事务结束(提交或回滚)后在当前线程执行，否则立即执行
+     * @param task
+     */
+    public static void runAfterCompletion(Runnable task){
+        if(TRANSACTION_PRESENT && TransactionSupport.registerAfterCommit(task, task)){
+            return;
+        }
+        task.run();
+    }
+
+    private void execute(Runnable task, Runnable rejected){
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                }catch (Exception e){
+                    LOGGER.error("cache refresh task error", e);
+                }
+            });
+        }catch (RejectedExecutionException e){
+            LOGGER.warn("cache refresh queue is full, task discarded");
+            rejected.run();
+        }
+    }
+
+    /**
+     * 单独的类引用spring-tx，不存在spring-tx时不会加载
+     */
+    private static class TransactionSupport {
+        private static boolean registerAfterCommit(Runnable afterCommit, Runnable rolledBack){
+            if(!TransactionSynchronizationManager.isSynchronizationActive()){
+                return false;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if(STATUS_COMMITTED == status){
+                        afterCommit.run();
+                    }else {
+                        rolledBack.run();
+                    }
+                }
+            });
+            return true;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.msh.starter.common.cache;
+
+import com.msh.frame.client.common.CommonResult;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 带查询耗时和过期时间的缓存值，用于过期前按概率提前刷新(XFetch)
+ * 每次读取时 当前时间 - 查询耗时 * beta * ln(random) >= 过期时间 则重新查询
+ * 越接近过期、查询耗时越长，提前刷新的概率越大，热点key的刷新被分散到过期前的一段时间内
+ */
+public class EarlyRefreshEntry {
+    /**
+     * 缓存的查询结果
+     */
+    private CommonResult value;
+    /**
+     * 查询耗时毫秒数
+     */
+    private long delta;
+    /**
+     * 过期时间戳(毫秒)
+     */
+    private long expireAt;
+
+    public EarlyRefreshEntry() {
+    }
+
+    public EarlyRefreshEntry(CommonResult value, long delta, long expireSecond) {
+        this.value = value;
+        this.delta = delta;
+        this.expireAt = System.currentTimeMillis() + expireSecond * 1000L;
+    }
+
+    /**
+     * 是否需要提前刷新
+     * @param beta 大于1提前刷新更积极，小于等于0不提前刷新
+     * @return
+     */
+    public boolean shouldRefresh(double beta) {
+        if(beta <= 0){
+            return false;
+        }
+        double random = 1.0D - ThreadLocalRandom.current().nextDouble();
+        return System.currentTimeMillis() - Math.max(delta, 1L) * beta * Math.log(random) >= expireAt;
+    }
+
+    public CommonResult getValue() {
+        return value;
+    }
+
+    public void setValue(CommonResult value) {
+        this.value = value;
+    }
+
+    public long getDelta() {
+        return delta;
+    }
+
+    public void setDelta(long delta) {
+        this.delta = delta;
+    }
+
+    public long getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(long expireAt) {
+        this.expireAt = expireAt;
+    }
+}
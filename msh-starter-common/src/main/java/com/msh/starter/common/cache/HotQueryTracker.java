@@ -0,0 +1,100 @@
+package com.msh.starter.common.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 记录查询次数最多的查询条件
+ * 超过容量的2倍时只保留查询次数最多的capacity个，保留的查询次数减半，使很久不用的查询逐渐被淘汰
+ * @param <Q>
+ */
+public class HotQueryTracker<Q> {
+    private final int capacity;
+    private final ConcurrentMap<String, HotQuery<Q>> queries = new ConcurrentHashMap<>();
+
+    public HotQueryTracker(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * 记录一次查询
+     * @param key 缓存key
+     * @param type 查询类型
+     * @param paramSupplier 第一次记录时获取查询条件，应返回查询条件的副本，返回null时不记录
+     * @return 记录的查询，未记录时返回null
+     */
+    public HotQuery<Q> record(String key, int type, Supplier<Q> paramSupplier) {
+        HotQuery<Q> query = queries.get(key);
+        if(null == query){
+            query = queries.computeIfAbsent(key, k -> {
+                Q param = paramSupplier.get();
+                return null == param ? null : new HotQuery<>(k, type, param);
+            });
+            if(null == query){
+                return null;
+            }
+            if(queries.size() > capacity * 2){
+                prune();
+            }
+        }
+        query.hits.increment();
+        return query;
+    }
+
+    /**
+     * 查询次数最多的查询，按次数从多到少排序
+     * @return
+     */
+    public List<HotQuery<Q>> top() {
+        List<HotQuery<Q>> list = new ArrayList<>(queries.values());
+        list.sort(Comparator.comparingLong((HotQuery<Q> q) -> q.hits.sum()).reversed());
+        return list.size() > capacity ? list.subList(0, capacity) : list;
+    }
+
+    private synchronized void prune() {
+        if(queries.size() <= capacity * 2){
+            return;
+        }
+        List<HotQuery<Q>> top = top();
+        queries.clear();
+        for(HotQuery<Q> query : top){
+            long hits = query.hits.sumThenReset();
+            query.hits.add(hits >> 1);
+            queries.put(query.key, query);
+        }
+    }
+
+    /**
+     * 查询条件
+     * @param <Q>
+     */
+    public static final class HotQuery<Q> {
+        private final String key;
+        private final int type;
+        private final Q param;
+        private final LongAdder hits = new LongAdder();
+
+        private HotQuery(String key, int type, Q param) {
+            this.key = key;
+            this.type = type;
+            this.param = param;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public Q getParam() {
+            return param;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.msh.starter.common.cache;
+
+import java.util.Collection;
+
+/**
+ * 布隆过滤器
+ * 只能增加不能删除，判断不存在时一定不存在，判断存在时可能不存在
+ */
+public interface IBloomFilter {
+    /**
+     * 是否可能存在
+     * 未初始化完成时返回true
+     * @param id
+     * @return
+     */
+    boolean mightContain(Object id);
+
+    /**
+     * 增加
+     * 失败时记录日志不抛出异常，不影响数据写入，该id可能被判断为不存在，需要重新init
+     * @param id
+     */
+    void put(Object id);
+
+    /**
+     * 批量增加
+     * 失败时记录日志不抛出异常，同put
+     * @param ids
+     */
+    void putAll(Collection<?> ids);
+
+    /**
+     * 增加全部已存在的数据并标记为初始化完成
+     * 初始化完成前mightContain都返回true
+     * 失败时抛出异常
+     * @param ids
+     */
+    void init(Collection<?> ids);
+}
@@ -0,0 +1,15 @@
+package com.msh.starter.common.cache;
+
+/**
+ * 布隆过滤器工厂
+ */
+public interface IBloomFilterFactory {
+    /**
+     * 创建布隆过滤器，相同名称使用同一个过滤器
+     * @param name 名称
+     * @param expectedInsertions 预计数据量
+     * @param fpp 误判率
+     * @return
+     */
+    IBloomFilter create(String name, long expectedInsertions, double fpp);
+}
@@ -0,0 +1,21 @@
+package com.msh.starter.common.cache;
+
+/**
+ * 缓存加载标记
+ * 多个服务节点同时缓存未命中时，只有获取到标记的节点查询数据库
+ */
+public interface ILoadingMarker {
+    /**
+     * 尝试设置加载标记
+     * @param key
+     * @param expireMillis 标记过期毫秒数，防止加载节点异常退出后标记一直存在
+     * @return 是否设置成功
+     */
+    boolean tryMark(String key, long expireMillis);
+
+    /**
+     * 删除本节点设置的加载标记
+     * @param key
+     */
+    void unmark(String key);
+}
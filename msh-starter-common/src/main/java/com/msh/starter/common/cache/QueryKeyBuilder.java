@@ -0,0 +1,347 @@
+package com.msh.starter.common.cache;
+
+import com.msh.frame.client.base.BaseQO;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 查询条件缓存key生成
+ * 按字段名顺序遍历查询条件的字段(包括父类BaseQO的字段)，计算128位哈希，转为22位的base64字符串
+ * 一次遍历同时得到包含分页字段和不包含分页字段(firstRow、currentPage、pageSize)的key
+ * 值为null的字段不参与计算，与字段不存在相同
+ * Set和Map与元素顺序无关，List和数组与元素顺序有关
+ * 只反射遍历BaseQO子类的字段，其他类型(jdk类型，第三方类)使用toString
+ * 嵌套超过MAX_DEPTH层(包括循环引用)时整个查询条件使用toString计算key，不抛出异常
+ * 每个类的字段只反射获取一次
+ */
+public class QueryKeyBuilder {
+    private static final String[] PAGING_FIELDS = {"firstRow", "currentPage", "pageSize"};
+    /**
+     * 嵌套对象最大深度
+     */
+    private static final int MAX_DEPTH = 8;
+    private static final long TAG_NULL = 0x01;
+    private static final long TAG_STRING = 0x02;
+    private static final long TAG_NUMBER = 0x03;
+    private static final long TAG_DECIMAL = 0x04;
+    private static final long TAG_BOOLEAN = 0x05;
+    private static final long TAG_DATE = 0x06;
+    private static final long TAG_ENUM = 0x07;
+    private static final long TAG_LIST = 0x08;
+    private static final long TAG_SET = 0x09;
+    private static final long TAG_MAP = 0x0A;
+    private static final long TAG_OBJECT = 0x0B;
+    private static final long TAG_CHAR = 0x0C;
+    private static final long TAG_TEXT = 0x0D;
+
+    private static final ClassValue<Accessor[]> ACCESSORS = new ClassValue<Accessor[]>() {
+        @Override
+        protected Accessor[] computeValue(Class<?> type) {
+            List<Accessor> list = new ArrayList<>();
+            for(Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()){
+                for(Field field : c.getDeclaredFields()){
+                    int modifiers = field.getModifiers();
+                    if(Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()){
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    list.add(new Accessor(field));
+                }
+            }
+            list.sort(Comparator.comparing((Accessor a) -> a.name).thenComparing(a -> a.field.getDeclaringClass().getName()));
+            return list.toArray(new Accessor[0]);
+        }
+    };
+
+    private QueryKeyBuilder() {
+    }
+
+    /**
+     * 生成查询条件的key
+     * @param param
+     * @return
+     */
+    public static QueryKey build(Object param) {
+        if(!(param instanceof BaseQO)){
+            return textKey(param);
+        }
+        try {
+            return fieldKey(param);
+        }catch (NestedTooDeepException | IllegalAccessException e){
+            return textKey(param);
+        }
+    }
+
+    /**
+     * 遍历字段计算key
+     */
+    private static QueryKey fieldKey(Object param) throws IllegalAccessException {
+        Hasher all = new Hasher();
+        Hasher withoutPaging = new Hasher();
+        long classHash = stringHash(param.getClass().getName());
+        all.feed(classHash);
+        withoutPaging.feed(classHash);
+        for(Accessor accessor : ACCESSORS.get(param.getClass())){
+            Object value = accessor.field.get(param);
+            if(null == value){
+                continue;
+            }
+            long valueHash = valueHash(value, 0);
+            all.feed(accessor.nameHash);
+            all.feed(valueHash);
+            if(!accessor.paging){
+                withoutPaging.feed(accessor.nameHash);
+                withoutPaging.feed(valueHash);
+            }
+        }
+        return new QueryKey(all.finish(), withoutPaging.finish());
+    }
+
+    /**
+     * 使用toString计算key
+     * 无法去掉分页字段，不包含分页字段的key与包含分页字段的key相同
+     */
+    private static QueryKey textKey(Object param) {
+        Hasher hasher = new Hasher();
+        hasher.feed(TAG_TEXT);
+        hasher.feed(stringHash(param.getClass().getName()));
+        hasher.feed(stringHash(String.valueOf(param)));
+        long[] hash = hasher.finish();
+        return new QueryKey(hash, hash);
+    }
+
+    /**
+     * 计算值的64位哈希
+     * 嵌套对象、集合先计算内部的128位哈希，再取其中64位
+     */
+    private static long valueHash(Object value, int depth) throws IllegalAccessException {
+        if(null == value){
+            return mix(TAG_NULL);
+        }
+        if(value instanceof String){
+            return mix(TAG_STRING ^ stringHash((String) value));
+        }
+        if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte){
+            return mix(TAG_NUMBER ^ mix(((Number) value).longValue()));
+        }
+        if(value instanceof Boolean){
+            return mix(TAG_BOOLEAN ^ ((Boolean) value ? 1L : 2L));
+        }
+        if(value instanceof Date){
+            return mix(TAG_DATE ^ mix(((Date) value).getTime()));
+        }
+        if(value instanceof Enum){
+            return mix(TAG_ENUM ^ stringHash(((Enum<?>) value).name()));
+        }
+        if(value instanceof Character){
+            return mix(TAG_CHAR ^ (Character) value);
+        }
+        if(value instanceof Number || value instanceof CharSequence){
+            return mix(TAG_DECIMAL ^ stringHash(value.toString()));
+        }
+        if(depth >= MAX_DEPTH){
+            throw NestedTooDeepException.INSTANCE;
+        }
+        if(value instanceof List){
+            Hasher hasher = new Hasher();
+            hasher.feed(TAG_LIST);
+            for(Object o : (List<?>) value){
+                hasher.feed(valueHash(o, depth + 1));
+            }
+            return hasher.finish()[0];
+        }
+        if(value.getClass().isArray()){
+            Hasher hasher = new Hasher();
+            hasher.feed(TAG_LIST);
+            int length = Array.getLength(value);
+            for(int i = 0; i < length; i++){
+                hasher.feed(valueHash(Array.get(value, i), depth + 1));
+            }
+            return hasher.finish()[0];
+        }
+        if(value instanceof Collection){
+            long sum = 0L;
+            long xor = 0L;
+            int size = 0;
+            for(Object o : (Collection<?>) value){
+                long h = valueHash(o, depth + 1);
+                sum += h;
+                xor ^= h;
+                size++;
+            }
+            return unorderedHash(TAG_SET, sum, xor, size);
+        }
+        if(value instanceof Map){
+            long sum = 0L;
+            long xor = 0L;
+            for(Map.Entry<?,?> entry : ((Map<?,?>) value).entrySet()){
+                long h = mix(valueHash(entry.getKey(), depth + 1) * 31 + valueHash(entry.getValue(), depth + 1));
+                sum += h;
+                xor ^= h;
+            }
+            return unorderedHash(TAG_MAP, sum, xor, ((Map<?,?>) value).size());
+        }
+        if(!(value instanceof BaseQO)){
+            //jdk类型(LocalDate等)和第三方类使用toString，不反射读取内部字段
+            return mix(TAG_DECIMAL ^ stringHash(value.toString()));
+        }
+        Hasher hasher = new Hasher();
+        hasher.feed(TAG_OBJECT);
+        hasher.feed(stringHash(value.getClass().getName()));
+        for(Accessor accessor : ACCESSORS.get(value.getClass())){
+            Object fieldValue = accessor.field.get(value);
+            if(null != fieldValue){
+                hasher.feed(accessor.nameHash);
+                hasher.feed(valueHash(fieldValue, depth + 1));
+            }
+        }
+        return hasher.finish()[0];
+    }
+
+    private static long unorderedHash(long tag, long sum, long xor, int size){
+        Hasher hasher = new Hasher();
+        hasher.feed(tag);
+        hasher.feed(sum);
+        hasher.feed(xor);
+        hasher.feed(size);
+        return hasher.finish()[0];
+    }
+
+    private static long stringHash(String s){
+        long h = 0xCBF29CE484222325L;
+        for(int i = 0; i < s.length(); i++){
+            h ^= s.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return mix(h ^ s.length());
+    }
+
+    /**
+     * murmur3 fmix64
+     */
+    private static long mix(long k){
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * 按murmur3 x64 128的方式每次输入一个long
+     */
+    private static final class Hasher {
+        private static final long C1 = 0x87C37B91114253D5L;
+        private static final long C2 = 0x4CF5AD432745937FL;
+        private long h1;
+        private long h2;
+        private int length;
+
+        private void feed(long v){
+            long k1 = Long.rotateLeft(v * C1, 31) * C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52DCE729;
+            long k2 = Long.rotateLeft(v * C2, 33) * C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495AB5;
+            length++;
+        }
+
+        private long[] finish(){
+            long r1 = h1 ^ length;
+            long r2 = h2 ^ length;
+            r1 += r2;
+            r2 += r1;
+            r1 = mix(r1);
+            r2 = mix(r2);
+            r1 += r2;
+            r2 += r1;
+            return new long[]{r1, r2};
+        }
+    }
+
+    /**
+     * 嵌套超过MAX_DEPTH层
+     */
+    private static final class NestedTooDeepException extends RuntimeException {
+        private static final NestedTooDeepException INSTANCE = new NestedTooDeepException();
+
+        private NestedTooDeepException() {
+            super("query param nested too deep", null, false, false);
+        }
+    }
+
+    /**
+     * 缓存的字段
+     */
+    private static final class Accessor {
+        private final Field field;
+        private final String name;
+        private final long nameHash;
+        private final boolean paging;
+
+        private Accessor(Field field) {
+            this.field = field;
+            this.name = field.getName();
+            this.nameHash = stringHash(name);
+            boolean paging = false;
+            for(String pagingField : PAGING_FIELDS){
+                if(pagingField.equals(name)){
+                    paging = true;
+                    break;
+                }
+            }
+            this.paging = paging;
+        }
+    }
+
+    /**
+     * 查询条件key
+     */
+    public static final class QueryKey {
+        private final String key;
+        private final String keyWithoutPaging;
+
+        private QueryKey(long[] all, long[] withoutPaging) {
+            this.key = encode(all);
+            this.keyWithoutPaging = encode(withoutPaging);
+        }
+
+        /**
+         * 包含分页字段的key，用于list、listOne
+         * @return
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 不包含分页字段的key，用于count
+         * @return
+         */
+        public String getKeyWithoutPaging() {
+            return keyWithoutPaging;
+        }
+
+        private static String encode(long[] hash){
+            byte[] bytes = new byte[16];
+            for(int i = 0; i < 8; i++){
+                bytes[i] = (byte) (hash[0] >>> (56 - i * 8));
+                bytes[i + 8] = (byte) (hash[1] >>> (56 - i * 8));
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.msh.starter.common.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 使用redis bitmap实现的布隆过滤器
+ * 位数和哈希次数根据预计数据量和误判率计算，每次判断或增加使用一次pipeline执行全部GETBIT/SETBIT
+ * 另一个key标记是否初始化完成，初始化完成前mightContain都返回true
+ * 位数和哈希次数与已有数据不一致时需要删除redis中的key后重新初始化
+ * redis异常时mightContain返回true，不影响查询
+ */
+public class RedisBloomFilter implements IBloomFilter {
+    private static Logger LOGGER = LoggerFactory.getLogger(RedisBloomFilter.class);
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+    private static final String KEY_PREFIX = "bloom:";
+    private static final String READY_SUFFIX = ":ready";
+    /**
+     * redis字符串最大512MB
+     */
+    private static final long MAX_BITS = 1L << 32;
+    /**
+     * 批量增加时每次pipeline的数据量
+     */
+    private static final int BATCH_SIZE = 1000;
+    /**
+     * 未初始化完成时检查初始化标记的间隔
+     */
+    private static final long READY_CHECK_INTERVAL_MILLIS = 10000L;
+
+    private final RedisTemplate redisTemplate;
+    private final byte[] rawKey;
+    private final byte[] rawReadyKey;
+    private final long numBits;
+    private final int numHashes;
+    private volatile boolean ready;
+    private volatile long readyCheckTime;
+
+    public RedisBloomFilter(RedisTemplate redisTemplate, String name, long expectedInsertions, double fpp) {
+        if(expectedInsertions <= 0 || fpp <= 0 || fpp >= 1){
+            throw new IllegalArgumentException("expectedInsertions must be positive and fpp must be in (0, 1)");
+        }
+        this.redisTemplate = redisTemplate;
+        RedisSerializer keySerializer = redisTemplate.getKeySerializer();
+        this.rawKey = keySerializer.serialize(KEY_PREFIX + name);
+        this.rawReadyKey = keySerializer.serialize(KEY_PREFIX + name + READY_SUFFIX);
+        this.numBits = Math.min(MAX_BITS, Math.max(64L, (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)))));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+    }
+
+    @Override
+    public boolean mightContain(Object id) {
+        if(!isReady()){
+            return true;
+        }
+        long[] offsets = offsets(id);
+        try {
+            List<Object> bits = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for(long offset : offsets){
+                    connection.getBit(rawKey, offset);
+                }
+                return null;
+            });
+            for(Object bit : bits){
+                if(!Boolean.TRUE.equals(bit)){
+                    return false;
+                }
+            }
+            return true;
+        }catch (RuntimeException e){
+            LOGGER.warn("bloom filter get error", e);
+            return true;
+        }
+    }
+
+    @Override
+    public void put(Object id) {
+        long[] offsets = offsets(id);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for(long offset : offsets){
+                    connection.setBit(rawKey, offset, true);
+                }
+                return null;
+            });
+        }catch (RuntimeException e){
+            LOGGER.warn("bloom filter put error, id:{}", id, e);
+        }
+    }
+
+    @Override
+    public void putAll(Collection<?> ids) {
+        try {
+            setBits(ids);
+        }catch (RuntimeException e){
+            LOGGER.warn("bloom filter put error, size:{}", ids.size(), e);
+        }
+    }
+
+    @Override
+    public void init(Collection<?> ids) {
+        setBits(ids);
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.set(rawReadyKey, "1".getBytes(DEFAULT_CHARSET)));
+        ready = true;
+    }
+
+    /**
+     * 分批pipeline设置位，异常时抛出
+     */
+    private void setBits(Collection<?> ids){
+        Iterator<?> it = ids.iterator();
+        while(it.hasNext()){
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for(int i = 0; i < BATCH_SIZE && it.hasNext(); i++){
+                    Object id = it.next();
+                    if(null == id){
+                        continue;
+                    }
+                    for(long offset : offsets(id)){
+                        connection.setBit(rawKey, offset, true);
+                    }
+                }
+                return null;
+            });
+        }
+    }
+
+    private boolean isReady(){
+        if(ready){
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if(now - readyCheckTime < READY_CHECK_INTERVAL_MILLIS){
+            return false;
+        }
+        readyCheckTime = now;
+        try {
+            ready = Boolean.TRUE.equals(redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.exists(rawReadyKey)));
+        }catch (RuntimeException e){
+            LOGGER.warn("bloom filter check ready error", e);
+        }
+        return ready;
+    }
+
+    /**
+     * 两个64位哈希组合得到numHashes个位置
+     */
+    private long[] offsets(Object id){
+        long hash = id instanceof Number ? ((Number) id).longValue() : stringHash(id.toString());
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L);
+        long[] offsets = new long[numHashes];
+        long combined = h1;
+        for(int i = 0; i < numHashes; i++){
+            offsets[i] = (combined & Long.MAX_VALUE) % numBits;
+            combined += h2;
+        }
+        return offsets;
+    }
+
+    private static long stringHash(String s){
+        long h = 0xCBF29CE484222325L;
+        for(int i = 0; i < s.length(); i++){
+            h ^= s.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /**
+     * murmur3 fmix64
+     */
+    private static long mix(long k){
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
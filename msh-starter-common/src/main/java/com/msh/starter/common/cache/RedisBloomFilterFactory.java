@@ -0,0 +1,23 @@
+package com.msh.starter.common.cache;
+
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * redis布隆过滤器工厂
+ */
+public class RedisBloomFilterFactory implements IBloomFilterFactory {
+    private final RedisTemplate redisTemplate;
+    private final Map<String, IBloomFilter> filters = new ConcurrentHashMap<>();
+
+    public RedisBloomFilterFactory(RedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public IBloomFilter create(String name, long expectedInsertions, double fpp) {
+        return filters.computeIfAbsent(name, n -> new RedisBloomFilter(redisTemplate, n, expectedInsertions, fpp));
+    }
+}
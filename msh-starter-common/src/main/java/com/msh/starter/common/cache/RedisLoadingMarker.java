@@ -0,0 +1,73 @@
+package com.msh.starter.common.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.Charset;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 使用redis SET NX PX实现的加载标记
+ * 标记的值为本次设置的随机值，删除时比较值，不会删除其他节点过期后重新设置的标记
+ * redis异常时按设置成功处理，不影响查询
+ */
+public class RedisLoadingMarker implements ILoadingMarker {
+    private static Logger LOGGER = LoggerFactory.getLogger(RedisLoadingMarker.class);
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+    private static final String KEY_PREFIX = "cache_loading:";
+    private static final byte[] UNMARK_SCRIPT = ("if redis.call('get', KEYS[1]) == ARGV[1] then "
+            + "return redis.call('del', KEYS[1]) else return 0 end").getBytes(DEFAULT_CHARSET);
+
+    private final RedisTemplate redisTemplate;
+    private final RedisSerializer keySerializer;
+    /**
+     * 本节点设置的标记值
+     */
+    private final ConcurrentMap<String, byte[]> tokens = new ConcurrentHashMap<>();
+
+    public RedisLoadingMarker(RedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+        this.keySerializer = redisTemplate.getKeySerializer();
+    }
+
+    @Override
+    public boolean tryMark(String key, long expireMillis) {
+        byte[] rawKey = keySerializer.serialize(KEY_PREFIX + key);
+        byte[] token = UUID.randomUUID().toString().getBytes(DEFAULT_CHARSET);
+        try {
+            Boolean success = (Boolean) redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                    connection.set(rawKey, token, Expiration.milliseconds(expireMillis), RedisStringCommands.SetOption.SET_IF_ABSENT));
+            if(Boolean.TRUE.equals(success)){
+                tokens.put(key, token);
+                return true;
+            }
+            return false;
+        }catch (RuntimeException e){
+            LOGGER.warn("set loading marker error, key:{}", key, e);
+            return true;
+        }
+    }
+
+    @Override
+    public void unmark(String key) {
+        byte[] token = tokens.remove(key);
+        if(null == token){
+            return;
+        }
+        byte[] rawKey = keySerializer.serialize(KEY_PREFIX + key);
+        try {
+            redisTemplate.execute((RedisCallback<Object>) connection ->
+                    connection.eval(UNMARK_SCRIPT, ReturnType.INTEGER, 1, rawKey, token));
+        }catch (RuntimeException e){
+            LOGGER.warn("remove loading marker error, key:{}", key, e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.msh.starter.common.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * 同一个key同时只执行一次加载
+ * 第一个线程执行加载，同时到达的其他线程等待并共用加载结果(包括异常)
+ * 加载结束后移除，之后的调用重新加载
+ * @param <K>
+ * @param <V>
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 执行加载
+     * @param key
+     * @param loader 加载方法
+     * @return
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> exist = calls.putIfAbsent(key, future);
+        if(null != exist){
+            return join(exist);
+        }
+        try {
+            V v = loader.get();
+            future.complete(v);
+            return v;
+        }catch (RuntimeException | Error e){
+            future.completeExceptionally(e);
+            throw e;
+        }finally {
+            calls.remove(key, future);
+        }
+    }
+
+    /**
+     * 正在加载的key数量
+     * @return
+     */
+    public int inFlightCount() {
+        return calls.size();
+    }
+
+    private static <V> V join(CompletableFuture<V> future){
+        try {
+            return future.join();
+        }catch (CompletionException e){
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error){
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
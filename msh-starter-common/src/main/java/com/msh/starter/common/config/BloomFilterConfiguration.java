@@ -0,0 +1,27 @@
+package com.msh.starter.common.config;
+
+import com.msh.starter.common.cache.IBloomFilterFactory;
+import com.msh.starter.common.cache.RedisBloomFilterFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 布隆过滤器配置
+ * msh.common.cache.bloom-filter.enabled=true 时开启
+ * 开启后service调用setBloomFilter和initBloomFilter后，get查询一定不存在的id时不查询数据库也不缓存空值
+ */
+@Configuration
+@ConditionalOnClass(RedisTemplate.class)
+@ConditionalOnProperty(prefix = "msh.common.cache.bloom-filter", name = "enabled", havingValue = "true")
+public class BloomFilterConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public IBloomFilterFactory bloomFilterFactory(RedisTemplate redisTemplate) {
+        return new RedisBloomFilterFactory(redisTemplate);
+    }
+}
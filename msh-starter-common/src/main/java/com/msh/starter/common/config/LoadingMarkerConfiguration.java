@@ -0,0 +1,27 @@
+package com.msh.starter.common.config;
+
+import com.msh.starter.common.cache.ILoadingMarker;
+import com.msh.starter.common.cache.RedisLoadingMarker;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 缓存加载标记配置
+ * msh.common.cache.loading-marker.enabled=true 时开启
+ * 开启后多个服务节点同一个key缓存未命中时只有一个节点查询数据库，其他节点短暂等待缓存写入
+ */
+@Configuration
+@ConditionalOnClass(RedisTemplate.class)
+@ConditionalOnProperty(prefix = "msh.common.cache.loading-marker", name = "enabled", havingValue = "true")
+public class LoadingMarkerConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ILoadingMarker loadingMarker(RedisTemplate redisTemplate) {
+        return new RedisLoadingMarker(redisTemplate);
+    }
+}
@@ -48,6 +48,19 @@ public class ApplicationContextUtil implements ApplicationContextAware {
         return applicationContext.getBean(clazz);
     }
 
+    /**
+     * 获取bean，不存在时返回null
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    public static <T> T getBeanIfAvailable(Class<T> clazz) {
+        if (applicationContext == null) {
+            return null;
+        }
+        return applicationContext.getBeanProvider(clazz).getIfAvailable();
+    }
+
     public static <T> T getBean(String name, Class<T> clazz) {
         if (applicationContext == null) {
             return null;
@@ -2,15 +2,21 @@ package com.msh.starter.id.generate.abstracts;
 
 import com.msh.frame.client.exception.ServerRuntimeException;
 import com.msh.frame.client.log.ErrorLog;
-import com.msh.frame.common.util.DateUtil;
-import com.msh.frame.interfaces.IdGenerateable;
+import com.msh.starter.id.generate.clock.SystemTimeSource;
 import com.msh.starter.id.generate.define.IdGenerateStringDef;
+import com.msh.starter.id.generate.interfaces.BatchIdGenerateable;
+import com.msh.starter.id.generate.interfaces.MeasurableIdGenerate;
+import com.msh.starter.id.generate.interfaces.TimeSource;
+import com.msh.starter.id.generate.interfaces.WorkerIdProvider;
+import com.msh.starter.id.generate.metrics.IdGenerateMetrics;
+import com.msh.starter.id.generate.scheduler.IdGenerateScheduler;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -26,21 +32,34 @@ import java.util.concurrent.TimeUnit;
  * 给需要分库分表的id 使用独立的id生成器对象
  * 保证id取余后的连续性
  * -----------------------------------------------------------------
- * 如果有可能出现几个小时都没有新数据的情况
- * 构造函数updateLastPassDaySecond设置为true
- * 启动个线程定时更新最后一次经过秒数
+ * 每个对象的状态独立，不使用锁
+ * (天数,当天经过秒数,该秒内计数)合并到一个AtomicLong中，通过CAS循环更新
+ * 多个分库分表的id生成器对象之间互不影响
+ * 日期头按天缓存，通过天数计算yyMMdd，跨天时自动切换
+ * 长时间没有新数据也不会出现日期头不更新的情况
+ * start()后在共用的定时任务线程(IdGenerateScheduler)中，于跨天时刻提前刷新日期头，
+ * 最长间隔一小时检查一次，stop()时取消，Spring容器中随容器启动和关闭
+ * 不调用start()时在生成id时切换，结果相同
+ * enableMetrics()后记录生成id数，借用下一秒次数和CAS重试次数
+ * getUniqueIDs 批量获取id，一次预留一秒内剩余的所有计数
+ * 时间来源默认SystemTimeSource，可通过setTimeSource设置，
+ * 使用FakeTimeSource可以测试跨天和借用时间超出的情况
  *
  */
 @Slf4j
-public abstract class AbstractDateIdGenerate implements IdGenerateable {
-    private static final Object LOCK_OBJECT = new Object();
+public abstract class AbstractDateIdGenerate implements BatchIdGenerateable, MeasurableIdGenerate, SmartLifecycle {
     private static final long ONE_DAY_SECOUND = 86400L;
+    /**
+     * 刷新日期头的最长间隔
+     */
+    private static final long MAX_REFRESH_MILLI_SECOND = TimeUnit.HOURS.toMillis(1);
+    private static final long ONE_DAY_MILLI_SECOND = ONE_DAY_SECOUND * 1000L;
     /**
      * 一天毫秒数共占多少个数字位
      * 一天 86400 秒
      * 共占5位
      */
-    private final int ONE_DAY_NUMBER_MULTIPLE = 100000;
+    private static final int ONE_DAY_NUMBER_MULTIPLE = 100000;
     /**
      * 服务器id所占数字位数
      */
@@ -53,40 +72,53 @@ public abstract class AbstractDateIdGenerate implements IdGenerateable {
     /**
      * 服务器id
      */
-    private static volatile Integer serviceId;
+    private volatile Integer serviceId;
+
+    /**
+     * 获取到的服务器id(未取模)
+     */
+    private volatile int workerId;
+
+    /**
+     * 服务器id提供者，为null时使用getServerId()
+     */
+    private final WorkerIdProvider workerIdProvider;
 
     /**
      * 服务器id位移后的值
      */
-    private static volatile long serviceIdBitShiftValue;
+    private volatile long serviceIdBitShiftValue;
 
     /**
-     * 最后一次index为0时的当天经过秒数
+     *  计数累计 最大值
      */
-    private volatile long lastPassDaySecond=0L;
+    private final int iMax;
 
     /**
-     * 每次生成一个id自增1，当大于iMax时置0，
-     * 保证lastIndex几个数据位一直处于自增状态
-     * 可在分库，分表时独立生成该对象来获取id
+     * 状态
+     * (天数 * ONE_DAY_NUMBER_MULTIPLE + 当天经过秒数) * indexNumberMultiple + 该秒内已生成id的计数
      */
-    private volatile int lastIndex=0;
+    private final AtomicLong lastState = new AtomicLong(0L);
 
     /**
-     *  计数累计
+     * 当天的日期头缓存
      */
-    private volatile int i=0;
+    private volatile DayFront dayFront;
 
     /**
-     *  计数累计 最大值
+     * 时间来源
+     */
+    private volatile TimeSource timeSource = SystemTimeSource.INSTANCE;
+
+    /**
+     * 刷新日期头的定时任务，未启动时为null
      */
-    private volatile int iMax;
+    private ScheduledFuture<?> dayFrontRefreshFuture;
 
     /**
-     * 日期开头的long值
-     * 后面有dateBackNumberCount位数字
+     * 统计数据，未开启时为null
      */
-    private volatile long dateFront;
+    private volatile IdGenerateMetrics metrics;
 
 
     /**
@@ -95,16 +127,22 @@ public abstract class AbstractDateIdGenerate implements IdGenerateable {
      * @param serviceIdNumberMultiple 服务器id所占数字位数 10的倍数
      */
     public AbstractDateIdGenerate(int indexNumberMultiple, int serviceIdNumberMultiple ) {
+        this(indexNumberMultiple, serviceIdNumberMultiple, null);
+    }
+
+    /**
+     * 两个参数相乘不能大于100000000
+     * @param indexNumberMultiple 每毫秒生成id 位数 10的倍数
+     * @param serviceIdNumberMultiple 服务器id所占数字位数 10的倍数
+     * @param workerIdProvider 服务器id提供者，为null时使用getServerId()
+     */
+    public AbstractDateIdGenerate(int indexNumberMultiple, int serviceIdNumberMultiple, WorkerIdProvider workerIdProvider) {
         this.serviceIdNumberMultiple = serviceIdNumberMultiple;
         this.indexNumberMultiple = indexNumberMultiple;
         iMax = indexNumberMultiple - 1;
-        Long dayLong = calculateDateFront();
-        if(null == dayLong){
-            throw new RuntimeException("生成日期头出错");
-        }
-        dateFront = dayLong;
-        init();
-        updateLastPassDaySecondThread();
+        dayFront = calculateDayFront(System.currentTimeMillis());
+        this.workerIdProvider = workerIdProvider;
+        init(workerIdProvider);
     }
 
     public AbstractDateIdGenerate() {
@@ -113,52 +151,157 @@ public abstract class AbstractDateIdGenerate implements IdGenerateable {
 
     @Override
     public long getUniqueID() {
-        synchronized (LOCK_OBJECT){
-            //超过一天最多秒数,重新计算当天日期头
-            if(ONE_DAY_SECOUND <= lastPassDaySecond){
-                Long dayLong = calculateDateFront();
-                if (null != dayLong
-                        && dayLong != dateFront) {
-                    dateFront = dayLong;
-                    lastPassDaySecond = 0;
-                }
-                //超过最大长度,抛出异常
-                if(ONE_DAY_NUMBER_MULTIPLE <= lastPassDaySecond){
-                    throw new ServerRuntimeException(
-                            new ErrorLog(null, this.getClass(),
-                                    "getUniqueID", null,
-                                    String.format(IdGenerateStringDef.LAST_PASS_DAY_SECOND_OUT_OF_MAX, lastPassDaySecond)));
+        checkWorkerId();
+        IdGenerateMetrics m = metrics;
+        for(;;){
+            long last = lastState.get();
+            long nowTick = currentTick();
+            long next = firstState(last, nowTick);
+            if(lastState.compareAndSet(last, next)){
+                long tick = next / indexNumberMultiple;
+                if(null != m){
+                    m.recordIssued(1);
+                    if(tick > nowTick){
+                        m.recordOverflow();
+                    }
                 }
+                return buildId(tick, next % indexNumberMultiple);
             }
-            long now= DateUtil.getPassDayMilliSecond()/1000;
-            if(now > lastPassDaySecond){
-                lastPassDaySecond = now;
-                i = 0;
-            }
-            if(i++ > iMax){
-                i = 0;
-                lastPassDaySecond ++;
+            if(null != m){
+                m.recordCasRetry();
             }
-            long destID = dateFront+ lastPassDaySecond *serviceIdNumberMultiple*indexNumberMultiple + serviceIdBitShiftValue  +lastIndex;
-            lastIndex++;
-            if(lastIndex>iMax){
-                lastIndex=0;
+        }
+    }
+
+    /**
+     * 批量生成id
+     * 每次CAS预留一秒内剩余的计数，一秒不够时继续预留下一秒
+     * @param count
+     * @return
+     */
+    @Override
+    public long[] getUniqueIDs(int count) {
+        long[] ids = new long[Math.max(count, 0)];
+        if(count <= 0){
+            return ids;
+        }
+        checkWorkerId();
+        int filled = 0;
+        IdGenerateMetrics m = metrics;
+        while(filled < count){
+            long last = lastState.get();
+            long nowTick = currentTick();
+            long first = firstState(last, nowTick);
+            long firstCount = first % indexNumberMultiple;
+            int take = (int) Math.min(count - filled, indexNumberMultiple - firstCount);
+            if(lastState.compareAndSet(last, first + take - 1)){
+                long tick = first / indexNumberMultiple;
+                for(int j = 0; j < take; j++){
+                    ids[filled++] = buildId(tick, firstCount + j);
+                }
+                if(null != m){
+                    m.recordIssued(take);
+                    if(tick > nowTick){
+                        m.recordOverflow();
+                    }
+                }
+            }else if(null != m){
+                m.recordCasRetry();
             }
-            return destID;
         }
+        return ids;
+    }
+
+    /**
+     * 当前时间的 天数 * ONE_DAY_NUMBER_MULTIPLE + 当天经过秒数
+     * @return
+     */
+    private long currentTick(){
+        long now = timeSource.currentTimeMillis();
+        DayFront day = currentDayFront(now);
+        return day.epochDay * ONE_DAY_NUMBER_MULTIPLE + (now - day.startMilliSecond) / 1000;
+    }
+
+    /**
+     * 根据上一次状态计算下一个可用的状态
+     * @param last 上一次状态
+     * @param nowTick 当前的 天数 * ONE_DAY_NUMBER_MULTIPLE + 当天经过秒数
+     * @return
+     */
+    private long firstState(long last, long nowTick){
+        long lastTick = last / indexNumberMultiple;
+        if(nowTick > lastTick){
+            return nowTick * indexNumberMultiple;
+        }
+        if(last % indexNumberMultiple < iMax){
+            return last + 1;
+        }
+        //当前秒已用完，借用下一秒
+        long lastPassDaySecond = lastTick % ONE_DAY_NUMBER_MULTIPLE + 1;
+        //超过最大长度,抛出异常
+        if(ONE_DAY_NUMBER_MULTIPLE <= lastPassDaySecond){
+            throw new ServerRuntimeException(
+                    new ErrorLog(null, this.getClass(),
+                            "getUniqueID", null,
+                            String.format(IdGenerateStringDef.LAST_PASS_DAY_SECOND_OUT_OF_MAX, lastPassDaySecond)));
+        }
+        return (lastTick + 1) * indexNumberMultiple;
+    }
+
+    /**
+     * 根据(天数,当天经过秒数)和该秒内的计数生成id
+     * @param tick 天数 * ONE_DAY_NUMBER_MULTIPLE + 当天经过秒数
+     * @param count 该秒内的计数
+     * @return
+     */
+    private long buildId(long tick, long count){
+        long epochDay = tick / ONE_DAY_NUMBER_MULTIPLE;
+        long passDaySecond = tick % ONE_DAY_NUMBER_MULTIPLE;
+        DayFront day = dayFront;
+        long dateFront = day.epochDay == epochDay ? day.dateFront : calculateDateFront(epochDay);
+        long index = (tick + count) % indexNumberMultiple;
+        return dateFront + passDaySecond * serviceIdNumberMultiple * indexNumberMultiple + serviceIdBitShiftValue + index;
     }
 
 
-    private void init(){
+    private void init(WorkerIdProvider workerIdProvider){
         if(serviceId == null){
-            synchronized (this.getClass()){
+            synchronized (this){
                 if(serviceId == null){
-                    Integer id = getServerId();
+                    Integer id = null == workerIdProvider ? getServerId() : workerIdProvider.getWorkerId();
                     if(null == id){
                         throw new RuntimeException("获取服务器Id失败");
                     }
-                    serviceId = id % serviceIdNumberMultiple;
-                    serviceIdBitShiftValue = serviceId * indexNumberMultiple;
+                    applyServiceId(id);
+                }
+            }
+        }
+    }
+
+    private void applyServiceId(int id){
+        serviceIdBitShiftValue = (long)(id % serviceIdNumberMultiple) * indexNumberMultiple;
+        serviceId = id % serviceIdNumberMultiple;
+        workerId = id;
+    }
+
+    /**
+     * 使用workerIdProvider时，生成id前检查服务器id
+     * 租约失效且无法重新租用时getWorkerId()抛出异常，不再生成id
+     * 重新租用到新的服务器id时使用新的服务器id
+     */
+    private void checkWorkerId(){
+        WorkerIdProvider provider = workerIdProvider;
+        if(null == provider){
+            return;
+        }
+        Integer id = provider.getWorkerId();
+        if(null == id){
+            throw new RuntimeException("获取服务器Id失败");
+        }
+        if(id != workerId){
+            synchronized (this){
+                if(id != workerId){
+                    applyServiceId(id);
                 }
             }
         }
@@ -171,55 +314,154 @@ public abstract class AbstractDateIdGenerate implements IdGenerateable {
      */
     abstract protected Integer getServerId();
 
-    private Long calculateDateFront(){
-        Long dayLong = null;
-        try {
-            DateFormat df =new SimpleDateFormat("yyMMdd");
-            String day = df.format(new Date());
-            dayLong = Long.valueOf(day) * ONE_DAY_NUMBER_MULTIPLE * serviceIdNumberMultiple * indexNumberMultiple;
-        }catch (Exception e){
-
-        }
-        return  dayLong;
-    }
-
-
-    /**
-     * 启动线程
-     * 更新最后一次当天经过秒数线程
-     * 如果一直没有更新，上一次的当天经过时间与这次当天经过时间间隔到一定范围，会出现日期头不更新
-     * 例:
-     * 第 M 次生成id
-     * 190512 lastPassDaySecond 3600 190512日期在经过了3600秒后生成一次id
-     * 第 M+1 次生成id
-     * 190513 在超过4000秒 190513日期在经过了4000秒后生成一次id
-     * 生成id 时, now > lastPassDaySecond ,不会更新日期头  则生成的id还会以190512开头
-     */
-    private void updateLastPassDaySecondThread(){
-        new Thread(() -> {
-            while(true){
-                try {
-                    TimeUnit.HOURS.sleep(1);
-                    synchronized (LOCK_OBJECT){
-                        long now= DateUtil.getPassDayMilliSecond()/1000;
-                        if(now != lastPassDaySecond){
-                            //如果当前经过时间 大于 最后一次获取的经过时间，说明第二天开始，重新获取日期开头
-                            if(now < lastPassDaySecond){
-                                while(true) {
-                                    Long dayLong = calculateDateFront();
-                                    if (null != dayLong
-                                            && dayLong != dateFront) {
-                                        dateFront = dayLong;
-                                        break;
-                                    }
-                                }
-                            }
-                            lastPassDaySecond = now;
-                        }
-                    }
-                }catch (Exception e){
-                }
-            }
-        });
+    /**
+     * 设置时间来源
+     * @param timeSource
+     */
+    public void setTimeSource(TimeSource timeSource) {
+        this.timeSource = timeSource;
+    }
+
+    @Override
+    public synchronized IdGenerateMetrics enableMetrics() {
+        if(null == metrics){
+            metrics = new IdGenerateMetrics();
+        }
+        return metrics;
+    }
+
+    /**
+     * 最后一次生成id使用的秒比当前时间超前的毫秒数
+     * @return
+     */
+    @Override
+    public long getBorrowAheadMillis() {
+        long lastTick = lastState.get() / indexNumberMultiple;
+        long nowTick = currentTick();
+        long lastSecond = lastTick / ONE_DAY_NUMBER_MULTIPLE * ONE_DAY_SECOUND + lastTick % ONE_DAY_NUMBER_MULTIPLE;
+        long nowSecond = nowTick / ONE_DAY_NUMBER_MULTIPLE * ONE_DAY_SECOUND + nowTick % ONE_DAY_NUMBER_MULTIPLE;
+        return Math.max(0L, (lastSecond - nowSecond) * 1000L);
+    }
+
+    /**
+     * 获取当前时间所在天的日期头
+     * 在缓存的当天范围内直接返回缓存，跨天时重新计算
+     * @param now 当前时间戳
+     * @return
+     */
+    private DayFront currentDayFront(long now){
+        DayFront day = dayFront;
+        if(now >= day.startMilliSecond && now < day.endMilliSecond){
+            return day;
+        }
+        day = calculateDayFront(now);
+        dayFront = day;
+        return day;
+    }
+
+    private DayFront calculateDayFront(long now){
+        TimeZone timeZone = TimeZone.getDefault();
+        int offset = timeZone.getOffset(now);
+        long epochDay = Math.floorDiv(now + offset, ONE_DAY_MILLI_SECOND);
+        long startMilliSecond = epochDay * ONE_DAY_MILLI_SECOND - offset;
+        long nextDayLocal = (epochDay + 1) * ONE_DAY_MILLI_SECOND;
+        long endMilliSecond = nextDayLocal - timeZone.getOffset(nextDayLocal - offset);
+        return new DayFront(epochDay, startMilliSecond, endMilliSecond, calculateDateFront(epochDay));
+    }
+
+    /**
+     * 通过天数计算yyMMdd日期头
+     * 不使用SimpleDateFormat
+     * @param epochDay 1970-01-01起的天数
+     * @return
+     */
+    private long calculateDateFront(long epochDay){
+        //civil from days
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long day = doy - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        long yyMMdd = (year % 100) * 10000 + month * 100 + day;
+        return yyMMdd * ONE_DAY_NUMBER_MULTIPLE * serviceIdNumberMultiple * indexNumberMultiple;
+    }
+
+
+    /**
+     * 启动刷新日期头的定时任务
+     */
+    @Override
+    public synchronized void start() {
+        if(null == dayFrontRefreshFuture){
+            scheduleDayFrontRefresh();
+        }
+    }
+
+    /**
+     * 取消刷新日期头的定时任务
+     */
+    @Override
+    public synchronized void stop() {
+        if(null != dayFrontRefreshFuture){
+            dayFrontRefreshFuture.cancel(false);
+            dayFrontRefreshFuture = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return null != dayFrontRefreshFuture;
+    }
+
+    /**
+     * 刷新日期头，并在下一次跨天时刻(最长一小时后)再次执行
+     * 需要在持有锁时调用
+     */
+    private void scheduleDayFrontRefresh(){
+        long now = timeSource.currentTimeMillis();
+        DayFront day = currentDayFront(now);
+        long delay = Math.min(Math.max(day.endMilliSecond - now, 1L), MAX_REFRESH_MILLI_SECOND);
+        dayFrontRefreshFuture = IdGenerateScheduler.getInstance().schedule(this::refreshDayFront, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void refreshDayFront(){
+        //已经stop
+        if(null == dayFrontRefreshFuture){
+            return;
+        }
+        scheduleDayFrontRefresh();
+    }
+
+    /**
+     * 一天的日期头缓存
+     */
+    private static final class DayFront {
+        /**
+         * 1970-01-01起的天数
+         */
+        private final long epochDay;
+        /**
+         * 当天开始时间戳
+         */
+        private final long startMilliSecond;
+        /**
+         * 第二天开始时间戳
+         */
+        private final long endMilliSecond;
+        /**
+         * 日期开头的long值
+         */
+        private final long dateFront;
+
+        private DayFront(long epochDay, long startMilliSecond, long endMilliSecond, long dateFront) {
+            this.epochDay = epochDay;
+            this.startMilliSecond = startMilliSecond;
+            this.endMilliSecond = endMilliSecond;
+            this.dateFront = dateFront;
+        }
     }
 }
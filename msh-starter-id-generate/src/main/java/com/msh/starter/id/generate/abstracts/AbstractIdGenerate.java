@@ -1,7 +1,23 @@
 package com.msh.starter.id.generate.abstracts;
 
 
-import com.msh.frame.interfaces.IdGenerateable;
+import com.msh.frame.client.exception.ServerRuntimeException;
+import com.msh.frame.client.log.ErrorLog;
+import com.msh.starter.id.generate.clock.SystemTimeSource;
+import com.msh.starter.id.generate.define.ClockBorrowPolicy;
+import com.msh.starter.id.generate.define.IdGenerateStringDef;
+import com.msh.starter.id.generate.interfaces.BatchIdGenerateable;
+import com.msh.starter.id.generate.interfaces.HighWaterMarkStore;
+import com.msh.starter.id.generate.interfaces.MeasurableIdGenerate;
+import com.msh.starter.id.generate.interfaces.TimeSource;
+import com.msh.starter.id.generate.interfaces.WorkerIdProvider;
+import com.msh.starter.id.generate.metrics.IdGenerateMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 注 :
@@ -21,8 +37,47 @@ import com.msh.frame.interfaces.IdGenerateable;
  * 可在分库分表时，取模可以平均分配数据
  * 给需要分库分表的id 使用独立的id生成器对象
  * 保证id取模后的连续性
+ * ---------------------------------------------------------------
+ * 无锁模式(lockFree=true):
+ * 时间戳和当前毫秒内计数合并到一个AtomicLong中，通过CAS循环更新，不使用synchronized
+ * 生成id的位结构不变(时间戳|服务器id|indexBitCount)
+ * 每毫秒内indexBitCount位的起始值取时间戳低位，之后自增，
+ * 仍保持自增效果，取模可以平均分配数据
+ * ---------------------------------------------------------------
+ * getUniqueIDs 批量获取id，一次预留一个时间戳内剩余的所有计数，
+ * 批量插入时不需要每条数据调用一次getUniqueID
+ * ---------------------------------------------------------------
+ * 分段模式(stripeBitCount>0，只在无锁模式下使用):
+ * indexBitCount的高stripeBitCount位作为分段号，每个分段有独立的计数
+ * 线程按线程id选择分段，线程数不超过分段数时各线程之间没有共享写
+ * 分段号不同id一定不同，同一分段内与无锁模式相同，同一毫秒内仍保证唯一
+ * 当前分段在本毫秒内用完时，依次尝试其他分段，所有分段都用完时当前分段借用下一毫秒
+ * 不同分段之间的id不保证严格递增
+ * ---------------------------------------------------------------
+ * 借用时间:
+ * 一毫秒内的计数用完时借用下一毫秒，最多比当前时间超前maxBorrowMillis毫秒(默认1000)
+ * 超过后按clockBorrowPolicy处理: PARK挂起等待时钟追上(默认)，SPIN自旋等待，FAIL抛出异常
+ * PARK和SPIN最多等待maxBorrowMillis毫秒，超过后抛出异常
+ * 最后一次时间戳比当前时间超前maxBorrowMillis以上时，说明时钟回拨，记录日志和次数，
+ * 回拨期间需要等待时钟时直接抛出异常，不等待回拨的时间
+ * ---------------------------------------------------------------
+ * 时间来源:
+ * 默认SystemTimeSource，可通过setTimeSource设置为CachedTimeSource减少系统调用
+ * 或FakeTimeSource测试借用时间和时钟回拨
+ * 加锁模式在进入锁之前读取时间
+ * ---------------------------------------------------------------
+ * 时间戳高水位(可选):
+ * 通过setHighWaterMarkStore设置后，启动时读取保存的时间戳，从该时间戳之后继续生成
+ * 生成的时间戳超过已保存的值时，先保存 时间戳 + highWaterMarkReserveMillis 再返回id，
+ * 每highWaterMarkReserveMillis毫秒最多写入一次，重启后不会生成已使用过的时间戳
+ * highWaterMarkReserveMillis小于maxBorrowMillis时，立即重启也不需要等待时钟
+ * ---------------------------------------------------------------
+ * 统计(可选):
+ * enableMetrics()后记录生成id数，借用下一毫秒次数，加锁等待时间，CAS重试次数
+ * getBorrowAheadMillis()为当前借用超前的毫秒数
  */
-public abstract class AbstractIdGenerate implements IdGenerateable {
+@Slf4j
+public abstract class AbstractIdGenerate implements BatchIdGenerateable, MeasurableIdGenerate {
     /**
      * 服务器id所占位数
      */
@@ -40,11 +95,21 @@ public abstract class AbstractIdGenerate implements IdGenerateable {
     /**
      * 服务器id
      */
-    private static volatile Integer serviceId;
+    private volatile Integer serviceId;
+
+    /**
+     * 获取到的服务器id(未取模)
+     */
+    private volatile int workerId;
+
+    /**
+     * 服务器id提供者，为null时使用getServerId()
+     */
+    private final WorkerIdProvider workerIdProvider;
     /**
      * 服务器id位移后的值
      */
-    private static volatile long serviceIdBitShiftValue ;
+    private volatile long serviceIdBitShiftValue ;
     /**
      * 最后一次index为0时的时间戳
      */
@@ -67,6 +132,71 @@ public abstract class AbstractIdGenerate implements IdGenerateable {
      *  计数累计 最大值
      */
     private int indexBit;
+    /**
+     * 是否使用无锁模式
+     */
+    private final boolean lockFree;
+    /**
+     * 防止伪共享，每个分段状态间隔的long个数
+     */
+    private static final int STRIPE_PADDING = 8;
+    /**
+     * 分段号所占位数
+     */
+    private final int stripeBitCount;
+    /**
+     * 分段数 - 1
+     */
+    private final int stripeMask;
+    /**
+     * 每个分段内计数所占位数
+     */
+    private final int stripeIndexBitCount;
+    /**
+     * 每个分段内计数最大值
+     */
+    private final long stripeIndexBit;
+    /**
+     * 无锁模式下每个分段的状态
+     * 高位为(最后一次时间戳 - ID_BEGIN_TIME)，低stripeIndexBitCount位为该毫秒内已生成id的计数
+     */
+    private final AtomicLongArray stripeStates;
+    /**
+     * 最多比当前时间超前借用的毫秒数
+     */
+    private volatile long maxBorrowMillis = 1000L;
+    /**
+     * 借用时间超出maxBorrowMillis时的处理方式
+     */
+    private volatile ClockBorrowPolicy clockBorrowPolicy = ClockBorrowPolicy.PARK;
+    /**
+     * 是否处于时钟回拨状态
+     */
+    private volatile boolean clockRegressed = false;
+    /**
+     * 时钟回拨次数
+     */
+    private final LongAdder clockRegressionCount = new LongAdder();
+    /**
+     * 时间来源
+     */
+    private volatile TimeSource timeSource = SystemTimeSource.INSTANCE;
+    /**
+     * 时间戳高水位存储
+     */
+    private volatile HighWaterMarkStore highWaterMarkStore;
+    /**
+     * 已保存的时间戳高水位，未设置存储时为Long.MAX_VALUE
+     */
+    private volatile long highWaterMark = Long.MAX_VALUE;
+    /**
+     * 每次保存高水位时预留的毫秒数
+     */
+    private volatile long highWaterMarkReserveMillis = 500L;
+    /**
+     * 统计数据，未开启时为null
+     */
+    private volatile IdGenerateMetrics metrics;
 
 
     public AbstractIdGenerate() {
@@ -79,24 +209,150 @@ public abstract class AbstractIdGenerate implements IdGenerateable {
      * @param indexBitCount 每秒生成id数量占用bit 不能大于32
      */
     public AbstractIdGenerate(int serviceIdBitCount, int indexBitCount) {
+        this(serviceIdBitCount, indexBitCount, false);
+    }
+
+    /**
+     *
+     * @param serviceIdBitCount 服务器id占用bit 不能大于32
+     * @param indexBitCount 每秒生成id数量占用bit 不能大于32
+     * @param lockFree 是否使用无锁(CAS)模式
+     */
+    public AbstractIdGenerate(int serviceIdBitCount, int indexBitCount, boolean lockFree) {
+        this(serviceIdBitCount, indexBitCount, lockFree, 0, null);
+    }
+
+    /**
+     * 分段无锁模式
+     * @param serviceIdBitCount 服务器id占用bit 不能大于32
+     * @param indexBitCount 每秒生成id数量占用bit 不能大于32
+     * @param stripeBitCount 分段号占用bit 必须小于indexBitCount, 0为不分段
+     */
+    public AbstractIdGenerate(int serviceIdBitCount, int indexBitCount, int stripeBitCount) {
+        this(serviceIdBitCount, indexBitCount, true, stripeBitCount, null);
+    }
+
+    /**
+     * 分段无锁模式，服务器id从workerIdProvider获取
+     * @param serviceIdBitCount 服务器id占用bit 不能大于32
+     * @param indexBitCount 每秒生成id数量占用bit 不能大于32
+     * @param stripeBitCount 分段号占用bit 必须小于indexBitCount, 0为不分段
+     * @param workerIdProvider 服务器id提供者，为null时使用getServerId()
+     */
+    public AbstractIdGenerate(int serviceIdBitCount, int indexBitCount, int stripeBitCount, WorkerIdProvider workerIdProvider) {
+        this(serviceIdBitCount, indexBitCount, true, stripeBitCount, workerIdProvider);
+    }
+
+    private AbstractIdGenerate(int serviceIdBitCount, int indexBitCount, boolean lockFree, int stripeBitCount, WorkerIdProvider workerIdProvider) {
+        if(stripeBitCount < 0 || stripeBitCount >= indexBitCount){
+            throw new IllegalArgumentException("stripeBitCount must be in [0, indexBitCount)");
+        }
+        this.lockFree = lockFree;
         this.serviceIdBitCount = serviceIdBitCount;
         this.indexBitCount = indexBitCount;
         this.currentTimeMillisDiffBitCount = serviceIdBitCount + indexBitCount;
         this.indexBit=(1<<indexBitCount)-1;
-        this.init();
+        this.stripeBitCount = stripeBitCount;
+        this.stripeMask = (1 << stripeBitCount) - 1;
+        this.stripeIndexBitCount = indexBitCount - stripeBitCount;
+        this.stripeIndexBit = (1L << stripeIndexBitCount) - 1;
+        this.stripeStates = new AtomicLongArray((stripeMask + 1) * STRIPE_PADDING);
+        this.workerIdProvider = workerIdProvider;
+        this.init(workerIdProvider);
     }
 
     @Override
-    public synchronized long getUniqueID() {
-        long now=System.currentTimeMillis();
+    public long getUniqueID() {
+        checkWorkerId();
+        long id = lockFree ? getUniqueIDByCas() : getUniqueIDBySynchronized();
+        IdGenerateMetrics m = metrics;
+        if(null != m){
+            m.recordIssued(1);
+        }
+        return id;
+    }
+
+    @Override
+    public long[] getUniqueIDs(int count) {
+        if(count <= 0){
+            return new long[0];
+        }
+        checkWorkerId();
+        long[] ids = lockFree ? getUniqueIDsByCas(count) : getUniqueIDsBySynchronized(count);
+        IdGenerateMetrics m = metrics;
+        if(null != m){
+            m.recordIssued(count);
+        }
+        return ids;
+    }
+
+    private long getUniqueIDBySynchronized() {
+        long now = timeSource.currentTimeMillis();
+        IdGenerateMetrics m = metrics;
+        if(null == m){
+            synchronized (this){
+                return nextIdBySynchronized(now);
+            }
+        }
+        long waitBegin = System.nanoTime();
+        synchronized (this){
+            m.recordLockWait(System.nanoTime() - waitBegin);
+            return nextIdBySynchronized(now);
+        }
+    }
+
+    /**
+     * 一次加锁生成多个id，时间戳只在开始和每毫秒用完时读取
+     * @param count
+     * @return
+     */
+    private long[] getUniqueIDsBySynchronized(int count) {
+        long now = timeSource.currentTimeMillis();
+        long[] ids = new long[count];
+        IdGenerateMetrics m = metrics;
+        long waitBegin = null == m ? 0L : System.nanoTime();
+        synchronized (this){
+            if(null != m){
+                m.recordLockWait(System.nanoTime() - waitBegin);
+            }
+            for(int j = 0; j < count; j++){
+                ids[j] = nextIdBySynchronized(now);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 需要在持有锁时调用
+     * @param now 当前时间戳，当前毫秒用完时重新读取
+     * @return
+     */
+    private long nextIdBySynchronized(long now) {
+        if(clockRegressed || lastCurrentTimeMillis - now > maxBorrowMillis){
+            //未用完当前毫秒时也检查时钟回拨
+            checkClockRegression(lastCurrentTimeMillis, now);
+        }
         if(now > lastCurrentTimeMillis){
             lastCurrentTimeMillis = now;
             i=0;
         }
         if(i++ > indexBit){
-            i=0;
+            //当前id已经算入下一毫秒
+            i=1;
             lastCurrentTimeMillis++;
+            //批量生成时传入的now可能已过期，重新读取
+            now = timeSource.currentTimeMillis();
+            if(now > lastCurrentTimeMillis){
+                lastCurrentTimeMillis = now;
+            }else {
+                recordOverflow();
+                checkClockRegression(lastCurrentTimeMillis - 1, now);
+                if(lastCurrentTimeMillis - now > maxBorrowMillis){
+                    awaitClock(lastCurrentTimeMillis - maxBorrowMillis);
+                }
+            }
         }
+        checkHighWaterMark(lastCurrentTimeMillis);
         long destID =  lastCurrentTimeMillis - ID_BEGIN_TIME;
         destID = (destID << currentTimeMillisDiffBitCount) + lastIndexBit + serviceIdBitShiftValue;
         lastIndexBit++;
@@ -106,19 +362,265 @@ public abstract class AbstractIdGenerate implements IdGenerateable {
         return destID;
     }
 
+    /**
+     * 无锁生成id
+     * 读取状态，计算下一个状态，CAS设置成功则使用该状态生成id，失败则重试
+     * 当前分段在本毫秒内用完时依次尝试其他分段，都用完时当前分段借用下一毫秒
+     * @return
+     */
+    private long getUniqueIDByCas() {
+        long nowTick = timeSource.currentTimeMillis() - ID_BEGIN_TIME;
+        int home = currentStripe();
+        for(int probe = 0; probe <= stripeMask; probe++){
+            int stripe = (home + probe) & stripeMask;
+            int offset = stripe * STRIPE_PADDING;
+            for(;;){
+                long last = stripeStates.get(offset);
+                long next = firstState(last, nowTick);
+                if((next >>> stripeIndexBitCount) > nowTick){
+                    //该分段本毫秒已用完
+                    break;
+                }
+                if(stripeStates.compareAndSet(offset, last, next)){
+                    checkHighWaterMark((next >>> stripeIndexBitCount) + ID_BEGIN_TIME);
+                    return buildId(stripe, next >>> stripeIndexBitCount, next & stripeIndexBit);
+                }
+                recordCasRetry();
+            }
+        }
+        int offset = home * STRIPE_PADDING;
+        for(;;){
+            long last = stripeStates.get(offset);
+            long next = firstState(last, nowTick);
+            long nextTick = next >>> stripeIndexBitCount;
+            checkClockRegression((last >>> stripeIndexBitCount) + ID_BEGIN_TIME, nowTick + ID_BEGIN_TIME);
+            if(nextTick - nowTick > maxBorrowMillis){
+                nowTick = awaitClock(nextTick - maxBorrowMillis + ID_BEGIN_TIME) - ID_BEGIN_TIME;
+                continue;
+            }
+            if(stripeStates.compareAndSet(offset, last, next)){
+                checkHighWaterMark(nextTick + ID_BEGIN_TIME);
+                if(nextTick > nowTick){
+                    recordOverflow();
+                }
+                return buildId(home, nextTick, next & stripeIndexBit);
+            }
+            recordCasRetry();
+        }
+    }
+
+    /**
+     * 无锁批量生成id
+     * 每次CAS预留当前分段一个时间戳内剩余的计数，一个时间戳不够时继续预留下一个时间戳
+     * @param count
+     * @return
+     */
+    private long[] getUniqueIDsByCas(int count) {
+        long[] ids = new long[count];
+        int stripe = currentStripe();
+        int offset = stripe * STRIPE_PADDING;
+        int filled = 0;
+        while(filled < count){
+            long last = stripeStates.get(offset);
+            long nowTick = timeSource.currentTimeMillis() - ID_BEGIN_TIME;
+            long first = firstState(last, nowTick);
+            long firstTick = first >>> stripeIndexBitCount;
+            if(firstTick > nowTick){
+                checkClockRegression((last >>> stripeIndexBitCount) + ID_BEGIN_TIME, nowTick + ID_BEGIN_TIME);
+                if(firstTick - nowTick > maxBorrowMillis){
+                    awaitClock(firstTick - maxBorrowMillis + ID_BEGIN_TIME);
+                    continue;
+                }
+            }
+            long firstCount = first & stripeIndexBit;
+            int take = (int) Math.min(count - filled, stripeIndexBit - firstCount + 1);
+            if(stripeStates.compareAndSet(offset, last, first + take - 1)){
+                long tick = first >>> stripeIndexBitCount;
+                checkHighWaterMark(tick + ID_BEGIN_TIME);
+                if(tick > nowTick){
+                    recordOverflow();
+                }
+                for(int j = 0; j < take; j++){
+                    ids[filled++] = buildId(stripe, tick, firstCount + j);
+                }
+            }else {
+                recordCasRetry();
+            }
+        }
+        return ids;
+    }
 
-    private void init(){
+    /**
+     * 根据上一次状态计算下一个可用的状态
+     * @param last 上一次状态
+     * @param nowTick 当前时间戳 - ID_BEGIN_TIME
+     * @return
+     */
+    private long firstState(long last, long nowTick){
+        long lastTick = last >>> stripeIndexBitCount;
+        if(nowTick > lastTick){
+            return nowTick << stripeIndexBitCount;
+        }
+        if((last & stripeIndexBit) < stripeIndexBit){
+            return last + 1;
+        }
+        //当前毫秒已用完，借用下一毫秒
+        return (lastTick + 1) << stripeIndexBitCount;
+    }
+
+    /**
+     * 等待时钟追上目标时间
+     * 根据clockBorrowPolicy挂起，自旋或抛出异常
+     * 最多等待maxBorrowMillis毫秒，时钟回拨期间不等待，直接抛出异常
+     * @param targetMillis 目标时间戳
+     * @return 当前时间戳
+     */
+    private long awaitClock(long targetMillis){
+        long deadline = 0L;
+        for(;;){
+            long now = timeSource.currentTimeMillis();
+            if(now >= targetMillis){
+                return now;
+            }
+            if(ClockBorrowPolicy.FAIL == clockBorrowPolicy || clockRegressed){
+                throw borrowOutOfMax();
+            }
+            long nanoTime = System.nanoTime();
+            if(0L == deadline){
+                deadline = nanoTime + TimeUnit.MILLISECONDS.toNanos(maxBorrowMillis);
+            }else if(nanoTime - deadline >= 0L){
+                throw borrowOutOfMax();
+            }
+            if(ClockBorrowPolicy.PARK == clockBorrowPolicy){
+                LockSupport.parkNanos(Math.min(TimeUnit.MILLISECONDS.toNanos(targetMillis - now), deadline - nanoTime));
+            }
+        }
+    }
+
+    private ServerRuntimeException borrowOutOfMax(){
+        return new ServerRuntimeException(
+                new ErrorLog(null, this.getClass(),
+                        "getUniqueID", null,
+                        String.format(IdGenerateStringDef.BORROW_MILLIS_OUT_OF_MAX, maxBorrowMillis)));
+    }
+
+    /**
+     * 检查时钟回拨
+     * 借用时间不会超过maxBorrowMillis，最后一次时间戳超前更多说明时钟回拨
+     * 只在回拨开始和恢复时记录
+     * 传入的当前时间可能在加锁或CAS重试前读取，超前过多时重新读取后再判断
+     * @param lastMillis 最后一次时间戳
+     * @param nowMillis 当前时间戳
+     */
+    private void checkClockRegression(long lastMillis, long nowMillis){
+        if(lastMillis - nowMillis > maxBorrowMillis){
+            nowMillis = Math.max(nowMillis, timeSource.currentTimeMillis());
+        }
+        if(lastMillis - nowMillis > maxBorrowMillis){
+            if(!clockRegressed){
+                clockRegressed = true;
+                clockRegressionCount.increment();
+                log.warn(IdGenerateStringDef.CLOCK_REGRESSION, lastMillis - nowMillis, lastMillis);
+            }
+        }else if(clockRegressed){
+            clockRegressed = false;
+            log.info(IdGenerateStringDef.CLOCK_REGRESSION_RECOVER);
+        }
+    }
+
+    /**
+     * 时间戳超过已保存的高水位时，保存新的高水位
+     * 需要在返回id之前调用
+     * @param timeMillis 生成id使用的时间戳
+     */
+    private void checkHighWaterMark(long timeMillis){
+        if(timeMillis <= highWaterMark){
+            return;
+        }
+        synchronized (stripeStates){
+            if(timeMillis > highWaterMark){
+                long mark = timeMillis + highWaterMarkReserveMillis;
+                highWaterMarkStore.store(mark);
+                highWaterMark = mark;
+            }
+        }
+    }
+
+    private void recordOverflow(){
+        IdGenerateMetrics m = metrics;
+        if(null != m){
+            m.recordOverflow();
+        }
+    }
+
+    private void recordCasRetry(){
+        IdGenerateMetrics m = metrics;
+        if(null != m){
+            m.recordCasRetry();
+        }
+    }
+
+    /**
+     * 当前线程使用的分段
+     * @return
+     */
+    private int currentStripe(){
+        return (int) Thread.currentThread().getId() & stripeMask;
+    }
+
+    /**
+     * 根据分段，时间戳和该毫秒内的计数生成id
+     * @param stripe 分段号
+     * @param tick 时间戳 - ID_BEGIN_TIME
+     * @param count 该分段该毫秒内的计数
+     * @return
+     */
+    private long buildId(int stripe, long tick, long count){
+        long index = ((long) stripe << stripeIndexBitCount) + ((tick + count) & stripeIndexBit);
+        return (tick << currentTimeMillisDiffBitCount) + index + serviceIdBitShiftValue;
+    }
+
+
+    private void init(WorkerIdProvider workerIdProvider){
         if(serviceId == null){
-            synchronized (this.getClass()){
+            synchronized (this){
                 if(serviceId == null){
-                    Integer id = getServerId();
+                    Integer id = null == workerIdProvider ? getServerId() : workerIdProvider.getWorkerId();
                     if(null == id){
                         throw new RuntimeException("获取服务器Id失败");
                     }
-                    //限制serviceId的位数
-                    long serverIdBitCalculate = (1L << serviceIdBitCount) -1 ;
-                    serviceId = id & ((int) serverIdBitCalculate);
-                    serviceIdBitShiftValue = ((long)serviceId) << indexBitCount;
+                    applyServiceId(id);
+                }
+            }
+        }
+    }
+
+    private void applyServiceId(int id){
+        //限制serviceId的位数
+        long serverIdBitCalculate = (1L << serviceIdBitCount) -1 ;
+        serviceIdBitShiftValue = ((long)(id & ((int) serverIdBitCalculate))) << indexBitCount;
+        serviceId = id & ((int) serverIdBitCalculate);
+        workerId = id;
+    }
+
+    /**
+     * 使用workerIdProvider时，生成id前检查服务器id
+     * 租约失效且无法重新租用时getWorkerId()抛出异常，不再生成id
+     * 重新租用到新的服务器id时使用新的服务器id
+     */
+    private void checkWorkerId(){
+        WorkerIdProvider provider = workerIdProvider;
+        if(null == provider){
+            return;
+        }
+        Integer id = provider.getWorkerId();
+        if(null == id){
+            throw new RuntimeException("获取服务器Id失败");
+        }
+        if(id != workerId){
+            synchronized (this){
+                if(id != workerId){
+                    applyServiceId(id);
                 }
             }
         }
@@ -130,4 +632,131 @@ public abstract class AbstractIdGenerate implements IdGenerateable {
      * @return
      */
     abstract protected Integer getServerId();
+
+    /**
+     * 获取id中的时间戳
+     * @param id 该生成器生成的id
+     * @return
+     */
+    public long getIdTimeMillis(long id) {
+        return (id >>> currentTimeMillisDiffBitCount) + ID_BEGIN_TIME;
+    }
+
+    /**
+     * 获取id中时间戳之后的部分(服务器id和计数)
+     * 同一时间戳内该部分唯一
+     * @param id 该生成器生成的id
+     * @return
+     */
+    public long getIdNodeSequence(long id) {
+        return id & ((1L << currentTimeMillisDiffBitCount) - 1);
+    }
+
+    /**
+     * id中时间戳之后的部分所占位数
+     * @return
+     */
+    public int getIdNodeSequenceBitCount() {
+        return currentTimeMillisDiffBitCount;
+    }
+
+    /**
+     * 设置最多比当前时间超前借用的毫秒数
+     * @param maxBorrowMillis
+     */
+    public void setMaxBorrowMillis(long maxBorrowMillis) {
+        this.maxBorrowMillis = maxBorrowMillis;
+    }
+
+    /**
+     * 设置借用时间超出maxBorrowMillis时的处理方式
+     * @param clockBorrowPolicy
+     */
+    public void setClockBorrowPolicy(ClockBorrowPolicy clockBorrowPolicy) {
+        this.clockBorrowPolicy = clockBorrowPolicy;
+    }
+
+    /**
+     * 设置时间来源
+     * @param timeSource
+     */
+    public void setTimeSource(TimeSource timeSource) {
+        this.timeSource = timeSource;
+    }
+
+    /**
+     * 设置时间戳高水位存储
+     * 读取保存的时间戳，之后生成的id时间戳都大于该值
+     * 需要在生成id之前设置
+     * @param highWaterMarkStore
+     */
+    public void setHighWaterMarkStore(HighWaterMarkStore highWaterMarkStore) {
+        long mark = highWaterMarkStore.load();
+        synchronized (this){
+            if(mark > lastCurrentTimeMillis){
+                //标记为该毫秒已用完，下一个id使用mark + 1
+                lastCurrentTimeMillis = mark;
+                i = indexBit + 1;
+            }
+        }
+        if(mark > ID_BEGIN_TIME){
+            long state = ((mark - ID_BEGIN_TIME) << stripeIndexBitCount) | stripeIndexBit;
+            for(int stripe = 0; stripe <= stripeMask; stripe++){
+                int offset = stripe * STRIPE_PADDING;
+                for(;;){
+                    long last = stripeStates.get(offset);
+                    if(last >= state || stripeStates.compareAndSet(offset, last, state)){
+                        break;
+                    }
+                }
+            }
+        }
+        synchronized (stripeStates){
+            this.highWaterMarkStore = highWaterMarkStore;
+            this.highWaterMark = mark;
+        }
+    }
+
+    /**
+     * 设置每次保存高水位时预留的毫秒数
+     * @param highWaterMarkReserveMillis
+     */
+    public void setHighWaterMarkReserveMillis(long highWaterMarkReserveMillis) {
+        this.highWaterMarkReserveMillis = highWaterMarkReserveMillis;
+    }
+
+    @Override
+    public IdGenerateMetrics enableMetrics() {
+        if(null == metrics){
+            synchronized (stripeStates){
+                if(null == metrics){
+                    metrics = new IdGenerateMetrics();
+                }
+            }
+        }
+        return metrics;
+    }
+
+    @Override
+    public long getBorrowAheadMillis() {
+        long lastMillis;
+        if(lockFree){
+            long lastTick = 0L;
+            for(int stripe = 0; stripe <= stripeMask; stripe++){
+                lastTick = Math.max(lastTick, stripeStates.get(stripe * STRIPE_PADDING) >>> stripeIndexBitCount);
+            }
+            lastMillis = lastTick + ID_BEGIN_TIME;
+        }else {
+            lastMillis = lastCurrentTimeMillis;
+        }
+        return Math.max(0L, lastMillis - timeSource.currentTimeMillis());
+    }
+
+    /**
+     * 时钟回拨次数
+     * @return
+     */
+    public long getClockRegressionCount() {
+        return clockRegressionCount.sum();
+    }
 }
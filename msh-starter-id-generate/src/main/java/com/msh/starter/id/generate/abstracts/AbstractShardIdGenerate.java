@@ -0,0 +1,157 @@
+package com.msh.starter.id.generate.abstracts;
+
+import com.msh.starter.id.generate.interfaces.WorkerIdProvider;
+
+/**
+ * 带分片号的id生成器
+ * id的最低shardBitCount位为分片号，通过 id & (2^shardBitCount - 1) 直接得到分片，不需要查询路由表
+ * 其余位与AbstractIdGenerate相同(时间戳|服务器id|indexBitCount)
+ * serviceIdBitCount + indexBitCount + shardBitCount 加起来24位可以使用20年，每多一位年数除2
+ * ---------------------------------------------------------------
+ * getUniqueID() 分片号取indexBitCount的低位，indexBitCount位一直处于自增状态，
+ * 所以分片号也依次自增，数据平均分配到各个分片，id % 2^n (n <= shardBitCount) 同样平均
+ * getUniqueID(shard) 生成指定分片的id，例如同一用户的数据放在同一分片
+ * ---------------------------------------------------------------
+ * 扩容:
+ * shardBitCount位为逻辑分片，通过getPhysicalShard映射到物理分片
+ * 使用jump consistent hash，物理分片从n个增加到n+1个时，只有约1/(n+1)的逻辑分片需要迁移
+ * 逻辑分片数需要远大于物理分片数
+ */
+public abstract class AbstractShardIdGenerate extends AbstractIdGenerate {
+    /**
+     * 分片号所占位数
+     */
+    private final int shardBitCount;
+    /**
+     * 分片号最大值
+     */
+    private final long shardMask;
+
+    /**
+     * @param serviceIdBitCount 服务器id占用bit 不能大于32
+     * @param indexBitCount 每毫秒生成id数量占用bit 不能小于shardBitCount
+     * @param shardBitCount 分片号占用bit
+     */
+    public AbstractShardIdGenerate(int serviceIdBitCount, int indexBitCount, int shardBitCount) {
+        this(serviceIdBitCount, indexBitCount, shardBitCount, null);
+    }
+
+    /**
+     * @param serviceIdBitCount 服务器id占用bit 不能大于32
+     * @param indexBitCount 每毫秒生成id数量占用bit 不能小于shardBitCount
+     * @param shardBitCount 分片号占用bit
+     * @param workerIdProvider 服务器id提供者，为null时使用getServerId()
+     */
+    public AbstractShardIdGenerate(int serviceIdBitCount, int indexBitCount, int shardBitCount, WorkerIdProvider workerIdProvider) {
+        super(serviceIdBitCount, indexBitCount, 0, workerIdProvider);
+        if(shardBitCount <= 0 || shardBitCount > indexBitCount){
+            throw new IllegalArgumentException("shardBitCount must be in (0, indexBitCount]");
+        }
+        this.shardBitCount = shardBitCount;
+        this.shardMask = (1L << shardBitCount) - 1;
+    }
+
+    /**
+     * 生成id，分片号依次自增
+     * @return
+     */
+    @Override
+    public long getUniqueID() {
+        long id = super.getUniqueID();
+        return (id << shardBitCount) | (id & shardMask);
+    }
+
+    /**
+     * 生成指定分片的id
+     * @param shard 分片号，超出范围时取低shardBitCount位
+     * @return
+     */
+    public long getUniqueID(int shard) {
+        return (super.getUniqueID() << shardBitCount) | (shard & shardMask);
+    }
+
+    @Override
+    public long[] getUniqueIDs(int count) {
+        long[] ids = super.getUniqueIDs(count);
+        for(int j = 0; j < ids.length; j++){
+            ids[j] = (ids[j] << shardBitCount) | (ids[j] & shardMask);
+        }
+        return ids;
+    }
+
+    /**
+     * 批量生成指定分片的id
+     * @param count
+     * @param shard 分片号，超出范围时取低shardBitCount位
+     * @return
+     */
+    public long[] getUniqueIDs(int count, int shard) {
+        long[] ids = super.getUniqueIDs(count);
+        for(int j = 0; j < ids.length; j++){
+            ids[j] = (ids[j] << shardBitCount) | (shard & shardMask);
+        }
+        return ids;
+    }
+
+    /**
+     * 获取id的逻辑分片号
+     * @param id
+     * @return
+     */
+    public int getShard(long id) {
+        return (int) (id & shardMask);
+    }
+
+    /**
+     * 获取id所在的物理分片
+     * @param id
+     * @param physicalShardCount 物理分片数
+     * @return
+     */
+    public int getPhysicalShard(long id, int physicalShardCount) {
+        return jumpConsistentHash(id & shardMask, physicalShardCount);
+    }
+
+    /**
+     * 逻辑分片个数
+     * @return
+     */
+    public int getShardCount() {
+        return (int) (shardMask + 1);
+    }
+
+    @Override
+    public long getIdTimeMillis(long id) {
+        return super.getIdTimeMillis(id >>> shardBitCount);
+    }
+
+    @Override
+    public long getIdNodeSequence(long id) {
+        return (super.getIdNodeSequence(id >>> shardBitCount) << shardBitCount) | (id & shardMask);
+    }
+
+    @Override
+    public int getIdNodeSequenceBitCount() {
+        return super.getIdNodeSequenceBitCount() + shardBitCount;
+    }
+
+    /**
+     * jump consistent hash
+     * @param key
+     * @param buckets
+     * @return [0, buckets)
+     */
+    private static int jumpConsistentHash(long key, int buckets) {
+        if(buckets <= 0){
+            throw new IllegalArgumentException("buckets must be positive");
+        }
+        long b = -1;
+        long j = 0;
+        while(j < buckets){
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+}
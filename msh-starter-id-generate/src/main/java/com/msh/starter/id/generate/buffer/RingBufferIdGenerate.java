@@ -0,0 +1,187 @@
+package com.msh.starter.id.generate.buffer;
+
+import com.msh.frame.interfaces.IdGenerateable;
+import com.msh.starter.id.generate.interfaces.BatchIdGenerateable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 预生成id的环形缓冲区
+ * 包装AbstractIdGenerate或AbstractDateIdGenerate等id生成器
+ * 一个后台线程(单生产者)预先生成id放入环形缓冲区，多个线程(多消费者)通过一次CAS取出id
+ * 取id时不读取时钟，不加锁
+ * ---------------------------------------------------------------
+ * 缓冲区剩余id数小于lowWaterMark时唤醒后台线程补充
+ * 缓冲区取空时同步调用被包装的id生成器
+ * ---------------------------------------------------------------
+ * 注:
+ * id在放入缓冲区时生成，取出时间晚于生成时间，
+ * 取出的id与同步生成的id之间不保证递增
+ */
+@Slf4j
+public class RingBufferIdGenerate implements BatchIdGenerateable, DisposableBean {
+    /**
+     * 没有被唤醒时后台线程检查缓冲区的间隔
+     */
+    private static final long REFILL_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final IdGenerateable idGenerateable;
+    private final long[] buffer;
+    private final int mask;
+    private final int capacity;
+    private final int lowWaterMark;
+    /**
+     * 下一个取出的位置
+     */
+    private final AtomicLong head = new AtomicLong(0L);
+    /**
+     * 已放入的位置(不包含)
+     */
+    private final AtomicLong tail = new AtomicLong(0L);
+    private final Thread producer;
+    /**
+     * 后台线程是否在等待
+     */
+    private volatile boolean producerWaiting = false;
+    private volatile boolean running = true;
+
+    /**
+     * @param idGenerateable 被包装的id生成器
+     */
+    public RingBufferIdGenerate(IdGenerateable idGenerateable) {
+        this(idGenerateable, 1 << 14, 1 << 12);
+    }
+
+    /**
+     * @param idGenerateable 被包装的id生成器
+     * @param capacity 缓冲区大小 2的倍数
+     * @param lowWaterMark 剩余id数小于该值时补充
+     */
+    public RingBufferIdGenerate(IdGenerateable idGenerateable, int capacity, int lowWaterMark) {
+        if(capacity <= 0 || Integer.bitCount(capacity) != 1){
+            throw new IllegalArgumentException("capacity must be a power of 2");
+        }
+        if(lowWaterMark <= 0 || lowWaterMark > capacity){
+            throw new IllegalArgumentException("lowWaterMark must be in (0, capacity]");
+        }
+        this.idGenerateable = idGenerateable;
+        this.buffer = new long[capacity];
+        this.mask = capacity - 1;
+        this.capacity = capacity;
+        this.lowWaterMark = lowWaterMark;
+        this.producer = new Thread(this::produce, "id-ring-buffer");
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+    @Override
+    public long getUniqueID() {
+        for(;;){
+            long h = head.get();
+            long t = tail.get();
+            if(h >= t){
+                //缓冲区已空，同步生成
+                signalProducer();
+                return idGenerateable.getUniqueID();
+            }
+            long id = buffer[(int) (h & mask)];
+            if(head.compareAndSet(h, h + 1)){
+                if(t - h - 1 < lowWaterMark){
+                    signalProducer();
+                }
+                return id;
+            }
+        }
+    }
+
+    @Override
+    public long[] getUniqueIDs(int count) {
+        long[] ids = new long[Math.max(count, 0)];
+        int filled = 0;
+        while(filled < count){
+            long h = head.get();
+            long t = tail.get();
+            int take = (int) Math.min(count - filled, t - h);
+            if(take <= 0){
+                signalProducer();
+                long[] rest = generate(count - filled);
+                System.arraycopy(rest, 0, ids, filled, rest.length);
+                return ids;
+            }
+            for(int j = 0; j < take; j++){
+                ids[filled + j] = buffer[(int) ((h + j) & mask)];
+            }
+            if(head.compareAndSet(h, h + take)){
+                filled += take;
+                if(t - h - take < lowWaterMark){
+                    signalProducer();
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 缓冲区中剩余的id数
+     * @return
+     */
+    public int size(){
+        return (int) (tail.get() - head.get());
+    }
+
+    private void signalProducer(){
+        if(producerWaiting){
+            LockSupport.unpark(producer);
+        }
+    }
+
+    /**
+     * 后台线程
+     * 补满缓冲区后等待，被唤醒或超时后检查剩余id数
+     */
+    private void produce(){
+        while(running){
+            try {
+                long t = tail.get();
+                int size = (int) (t - head.get());
+                if(size < lowWaterMark){
+                    long[] ids = generate(capacity - size);
+                    for(int j = 0; j < ids.length; j++){
+                        buffer[(int) ((t + j) & mask)] = ids[j];
+                    }
+                    tail.lazySet(t + ids.length);
+                    continue;
+                }
+                producerWaiting = true;
+                if(size() >= lowWaterMark){
+                    LockSupport.parkNanos(this, REFILL_CHECK_NANOS);
+                }
+                producerWaiting = false;
+            }catch (Exception e){
+                log.warn("refill id ring buffer error", e);
+                LockSupport.parkNanos(this, REFILL_CHECK_NANOS);
+            }
+        }
+    }
+
+    private long[] generate(int count){
+        if(idGenerateable instanceof BatchIdGenerateable){
+            return ((BatchIdGenerateable) idGenerateable).getUniqueIDs(count);
+        }
+        long[] ids = new long[count];
+        for(int j = 0; j < count; j++){
+            ids[j] = idGenerateable.getUniqueID();
+        }
+        return ids;
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        LockSupport.unpark(producer);
+    }
+}
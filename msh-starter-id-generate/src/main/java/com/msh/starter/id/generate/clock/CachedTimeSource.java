@@ -0,0 +1,51 @@
+package com.msh.starter.id.generate.clock;
+
+import com.msh.starter.id.generate.interfaces.TimeSource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 缓存的时间
+ * 一个后台线程每毫秒更新一次时间，所有id生成器共用
+ * 获取时间只读取一个volatile变量，不调用System.currentTimeMillis()
+ * 时间最多落后真实时间约1毫秒，id生成器会把落后的部分当作同一毫秒或借用处理
+ */
+public class CachedTimeSource implements TimeSource {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static volatile CachedTimeSource instance;
+
+    private volatile long now = System.currentTimeMillis();
+
+    private CachedTimeSource() {
+        Thread ticker = new Thread(() -> {
+            for(;;){
+                LockSupport.parkNanos(TICK_NANOS);
+                now = System.currentTimeMillis();
+            }
+        }, "id-time-ticker");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * 获取共用的缓存时间，第一次调用时启动后台线程
+     * @return
+     */
+    public static CachedTimeSource getInstance(){
+        if(null == instance){
+            synchronized (CachedTimeSource.class){
+                if(null == instance){
+                    instance = new CachedTimeSource();
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+}
@@ -0,0 +1,39 @@
+package com.msh.starter.id.generate.clock;
+
+import com.msh.starter.id.generate.interfaces.TimeSource;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 手动控制的时间，测试使用
+ * 可以测试跨天，时钟回拨，借用时间超出等情况，不需要等待真实时间
+ */
+public class FakeTimeSource implements TimeSource {
+    private final AtomicLong now;
+
+    public FakeTimeSource(long now) {
+        this.now = new AtomicLong(now);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now.get();
+    }
+
+    /**
+     * 设置当前时间
+     * @param millis
+     */
+    public void set(long millis){
+        now.set(millis);
+    }
+
+    /**
+     * 当前时间增加(可以为负数，模拟时钟回拨)
+     * @param millis
+     * @return 增加后的时间
+     */
+    public long advance(long millis){
+        return now.addAndGet(millis);
+    }
+}
@@ -0,0 +1,19 @@
+package com.msh.starter.id.generate.clock;
+
+import com.msh.starter.id.generate.interfaces.TimeSource;
+
+/**
+ * 系统时间
+ * 每次调用System.currentTimeMillis()
+ */
+public class SystemTimeSource implements TimeSource {
+    public static final SystemTimeSource INSTANCE = new SystemTimeSource();
+
+    private SystemTimeSource() {
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
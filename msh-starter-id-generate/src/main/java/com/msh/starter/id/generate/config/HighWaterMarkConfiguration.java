@@ -0,0 +1,24 @@
+package com.msh.starter.id.generate.config;
+
+import com.msh.starter.id.generate.interfaces.HighWaterMarkStore;
+import com.msh.starter.id.generate.store.MappedFileHighWaterMarkStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 默认id生成器的时间戳高水位保存到本地文件
+ * 配置 msh.id.generate.high-water-mark.file 时开启
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "msh.id.generate.high-water-mark", name = "file")
+public class HighWaterMarkConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(HighWaterMarkStore.class)
+    public HighWaterMarkStore highWaterMarkStore(@Value("${msh.id.generate.high-water-mark.file}") String file) {
+        return new MappedFileHighWaterMarkStore(file);
+    }
+}
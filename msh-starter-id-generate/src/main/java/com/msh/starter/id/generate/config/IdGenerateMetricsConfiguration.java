@@ -0,0 +1,26 @@
+package com.msh.starter.id.generate.config;
+
+import com.msh.starter.id.generate.interfaces.MeasurableIdGenerate;
+import com.msh.starter.id.generate.metrics.IdGenerateMeterBinder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/**
+ * classpath中存在Micrometer时统计id生成器
+ * msh.id.generate.metrics.enabled=false 时关闭
+ */
+@Configuration
+@ConditionalOnClass(MeterRegistry.class)
+@ConditionalOnProperty(prefix = "msh.id.generate.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class IdGenerateMetricsConfiguration {
+
+    @Bean
+    public IdGenerateMeterBinder idGenerateMeterBinder(Map<String, MeasurableIdGenerate> idGenerates) {
+        return new IdGenerateMeterBinder(idGenerates);
+    }
+}
@@ -0,0 +1,35 @@
+package com.msh.starter.id.generate.config;
+
+import com.msh.starter.id.generate.interfaces.WorkerIdProvider;
+import com.msh.starter.id.generate.worker.RedisWorkerIdProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 通过redis租用服务器id
+ * msh.id.generate.worker-id.redis.enabled=true 时开启
+ * msh.id.generate.worker-id.redis.worker-id-count 服务器id个数 默认65536
+ * msh.id.generate.worker-id.redis.lease-seconds 租期 默认30秒
+ * msh.id.generate.worker-id.redis.max-lease-probes 一次租用最多尝试的服务器id个数 默认64
+ * 需要引入msh-starter-redis
+ */
+@Configuration
+@ConditionalOnClass(RedisTemplate.class)
+@ConditionalOnProperty(prefix = "msh.id.generate.worker-id.redis", name = "enabled", havingValue = "true")
+public class RedisWorkerIdConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(WorkerIdProvider.class)
+    public WorkerIdProvider redisWorkerIdProvider(RedisTemplate redisTemplate,
+                                                  @Value("${spring.application.name:msh}") String applicationName,
+                                                  @Value("${msh.id.generate.worker-id.redis.worker-id-count:65536}") int workerIdCount,
+                                                  @Value("${msh.id.generate.worker-id.redis.lease-seconds:30}") long leaseSeconds,
+                                                  @Value("${msh.id.generate.worker-id.redis.max-lease-probes:64}") int maxLeaseProbes) {
+        return new RedisWorkerIdProvider(redisTemplate, applicationName, workerIdCount, leaseSeconds, maxLeaseProbes);
+    }
+}
@@ -0,0 +1,19 @@
+package com.msh.starter.id.generate.define;
+
+/**
+ * 借用时间超出最大借用毫秒数时的处理方式
+ */
+public enum ClockBorrowPolicy {
+    /**
+     * 挂起线程，等待时钟追上，最多等待maxBorrowMillis毫秒
+     */
+    PARK,
+    /**
+     * 自旋，等待时钟追上，最多等待maxBorrowMillis毫秒
+     */
+    SPIN,
+    /**
+     * 直接抛出异常
+     */
+    FAIL
+}
@@ -2,4 +2,7 @@ package com.msh.starter.id.generate.define;
 
 public class IdGenerateStringDef {
     public static final String LAST_PASS_DAY_SECOND_OUT_OF_MAX = "lastPassDaySecond超出限制%s";
+    public static final String BORROW_MILLIS_OUT_OF_MAX = "借用时间超出限制%s毫秒";
+    public static final String CLOCK_REGRESSION = "时钟回拨{}毫秒，最后一次时间戳{}";
+    public static final String CLOCK_REGRESSION_RECOVER = "时钟回拨已恢复";
 }
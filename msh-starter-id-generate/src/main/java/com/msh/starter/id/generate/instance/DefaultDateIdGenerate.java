@@ -2,13 +2,16 @@ package com.msh.starter.id.generate.instance;
 
 import com.msh.frame.common.util.IpUtil;
 import com.msh.starter.id.generate.abstracts.AbstractDateIdGenerate;
+import com.msh.starter.id.generate.interfaces.WorkerIdProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
 
 /**
  * 默认实现的带日期的id生成器
  * 每秒最多生成1000个id
- * 通过获取ip后两位来区别唯一服务
+ * 存在WorkerIdProvider时使用其提供的服务器id，否则通过获取ip后两位来区别唯一服务
  * 如果无法满足，请自己构建AbstractDateIdGenerate
  */
 @Component("dateIdGenerate")
@@ -17,6 +20,15 @@ public class DefaultDateIdGenerate extends AbstractDateIdGenerate {
     public DefaultDateIdGenerate(){
         super(1000,100000);
     }
+
+    /**
+     * @param workerIdProvider 服务器id提供者
+     */
+    @Autowired
+    public DefaultDateIdGenerate(ObjectProvider<WorkerIdProvider> workerIdProvider){
+        super(1000,100000,workerIdProvider.getIfAvailable());
+    }
+
     @Override
     protected Integer getServerId() {
         String localIP = IpUtil.getLocalIP();
@@ -3,14 +3,47 @@ package com.msh.starter.id.generate.instance;
 import com.msh.frame.common.util.IpUtil;
 import com.msh.frame.interfaces.IdGenerateable;
 import com.msh.starter.id.generate.abstracts.AbstractIdGenerate;
+import com.msh.starter.id.generate.interfaces.HighWaterMarkStore;
+import com.msh.starter.id.generate.interfaces.WorkerIdProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 
+/**
+ * 默认实现的id生成器
+ * 每毫秒最多生成256个id
+ * 可通过 msh.id.generate.stripe-bit-count 开启分段模式，
+ * 256个计数分为 2^stripe-bit-count 个分段，各线程使用独立分段
+ * 存在WorkerIdProvider时使用其提供的服务器id，否则通过获取ip后两位来区别唯一服务
+ * 存在HighWaterMarkStore时重启后从保存的时间戳之后继续生成
+ */
 @Component("idGenerate")
 public class DefaultIdGenerate extends AbstractIdGenerate {
     public DefaultIdGenerate(){
-        super(16,8);
+        this(0);
+    }
+
+    /**
+     * @param stripeBitCount 分段号占用bit 0为不分段 不能大于7
+     */
+    public DefaultIdGenerate(int stripeBitCount){
+        super(16,8,stripeBitCount);
+    }
+
+    /**
+     * @param stripeBitCount 分段号占用bit 0为不分段 不能大于7
+     * @param workerIdProvider 服务器id提供者
+     * @param highWaterMarkStore 时间戳高水位存储
+     */
+    @Autowired
+    public DefaultIdGenerate(@Value("${msh.id.generate.stripe-bit-count:0}") int stripeBitCount,
+                             ObjectProvider<WorkerIdProvider> workerIdProvider,
+                             ObjectProvider<HighWaterMarkStore> highWaterMarkStore){
+        super(16,8,stripeBitCount,workerIdProvider.getIfAvailable());
+        highWaterMarkStore.ifAvailable(this::setHighWaterMarkStore);
     }
 
     @Override
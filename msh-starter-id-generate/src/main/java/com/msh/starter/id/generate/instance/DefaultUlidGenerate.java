@@ -0,0 +1,15 @@
+package com.msh.starter.id.generate.instance;
+
+import com.msh.starter.id.generate.ulid.UlidIdGenerate;
+import org.springframework.stereotype.Component;
+
+/**
+ * 默认实现的128位id生成器
+ * 使用默认id生成器的服务器id和计数
+ */
+@Component("ulidGenerate")
+public class DefaultUlidGenerate extends UlidIdGenerate {
+    public DefaultUlidGenerate(DefaultIdGenerate idGenerate) {
+        super(idGenerate);
+    }
+}
@@ -0,0 +1,17 @@
+package com.msh.starter.id.generate.interfaces;
+
+import com.msh.frame.interfaces.IdGenerateable;
+
+/**
+ * 可批量获取id的id生成器
+ * 批量插入时一次预留多个id，不需要每条数据调用一次getUniqueID
+ */
+public interface BatchIdGenerateable extends IdGenerateable {
+    /**
+     * 一次获取多个唯一id
+     * 同一时间戳内的id连续预留
+     * @param count 获取id数量
+     * @return
+     */
+    long[] getUniqueIDs(int count);
+}
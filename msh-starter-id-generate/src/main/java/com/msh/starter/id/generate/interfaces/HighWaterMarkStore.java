@@ -0,0 +1,19 @@
+package com.msh.starter.id.generate.interfaces;
+
+/**
+ * 时间戳高水位存储
+ * 保存id生成器已使用(预留)的最大时间戳，重启后从该时间戳之后继续生成，避免重复
+ */
+public interface HighWaterMarkStore {
+    /**
+     * 读取保存的最大时间戳
+     * @return 没有保存过时返回0
+     */
+    long load();
+
+    /**
+     * 保存最大时间戳
+     * @param timeMillis
+     */
+    void store(long timeMillis);
+}
@@ -0,0 +1,20 @@
+package com.msh.starter.id.generate.interfaces;
+
+import com.msh.starter.id.generate.metrics.IdGenerateMetrics;
+
+/**
+ * 可统计的id生成器
+ */
+public interface MeasurableIdGenerate {
+    /**
+     * 开启统计，多次调用返回同一个对象
+     * @return
+     */
+    IdGenerateMetrics enableMetrics();
+
+    /**
+     * 最后一次生成id使用的时间比当前时间超前的毫秒数，没有超前时为0
+     * @return
+     */
+    long getBorrowAheadMillis();
+}
@@ -0,0 +1,12 @@
+package com.msh.starter.id.generate.interfaces;
+
+/**
+ * id生成器使用的时间来源
+ */
+public interface TimeSource {
+    /**
+     * 当前时间戳 毫秒
+     * @return
+     */
+    long currentTimeMillis();
+}
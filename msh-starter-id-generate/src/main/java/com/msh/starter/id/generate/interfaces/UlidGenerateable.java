@@ -0,0 +1,29 @@
+package com.msh.starter.id.generate.interfaces;
+
+import com.msh.starter.id.generate.ulid.Ulid;
+
+/**
+ * 128位按时间排序的id生成器(ULID格式)
+ * 字符串形式为26位Crockford base32，字符串顺序与时间顺序一致
+ */
+public interface UlidGenerateable {
+    /**
+     * 获取唯一id
+     * @return
+     */
+    Ulid getUniqueUlid();
+
+    /**
+     * 获取唯一id，直接编码写入dst，不生成String
+     * @param dst 写入的字符数组
+     * @param offset 起始位置，需要有26位空间
+     */
+    void getUniqueUlid(char[] dst, int offset);
+
+    /**
+     * 获取唯一id，直接编码(ASCII)写入dst，不生成String
+     * @param dst 写入的字节数组
+     * @param offset 起始位置，需要有26位空间
+     */
+    void getUniqueUlid(byte[] dst, int offset);
+}
@@ -0,0 +1,15 @@
+package com.msh.starter.id.generate.interfaces;
+
+/**
+ * 服务器id(worker id)提供者
+ * 配置后id生成器使用该服务器id，不再通过getServerId()获取
+ * id生成器每次生成id前调用getWorkerId()，服务器id变化时使用新的服务器id
+ */
+public interface WorkerIdProvider {
+    /**
+     * 获取当前服务唯一的服务器id
+     * 服务器id失效(如租约被其他服务占用或过期)且无法获取新的服务器id时抛出异常，id生成器不再生成id
+     * @return
+     */
+    Integer getWorkerId();
+}
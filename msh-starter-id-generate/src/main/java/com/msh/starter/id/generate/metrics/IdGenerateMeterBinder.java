@@ -0,0 +1,59 @@
+package com.msh.starter.id.generate.metrics;
+
+import com.msh.starter.id.generate.abstracts.AbstractIdGenerate;
+import com.msh.starter.id.generate.interfaces.MeasurableIdGenerate;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把id生成器的统计数据注册到Micrometer
+ * 所有指标带name标签(bean名称)
+ * msh.id.generate.issued 生成id数，按时间求速率即每秒生成id数
+ * msh.id.generate.overflow 计数用完借用下一个时间戳的次数
+ * msh.id.generate.borrow.ahead 当前借用超前的毫秒数
+ * msh.id.generate.cas.retry 无锁模式CAS失败重试次数
+ * msh.id.generate.lock.wait 加锁模式等待锁的时间
+ * msh.id.generate.clock.regression 时钟回拨次数(只有AbstractIdGenerate)
+ */
+public class IdGenerateMeterBinder implements MeterBinder {
+    private static final String PREFIX = "msh.id.generate.";
+
+    private final Map<String, MeasurableIdGenerate> idGenerates;
+
+    public IdGenerateMeterBinder(Map<String, MeasurableIdGenerate> idGenerates) {
+        this.idGenerates = idGenerates;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        idGenerates.forEach((name, idGenerate) -> bind(registry, name, idGenerate));
+    }
+
+    private void bind(MeterRegistry registry, String name, MeasurableIdGenerate idGenerate){
+        IdGenerateMetrics metrics = idGenerate.enableMetrics();
+        Tags tags = Tags.of("name", name);
+        FunctionCounter.builder(PREFIX + "issued", metrics, IdGenerateMetrics::getIssued)
+                .tags(tags).description("生成id数").register(registry);
+        FunctionCounter.builder(PREFIX + "overflow", metrics, IdGenerateMetrics::getOverflow)
+                .tags(tags).description("计数用完借用下一个时间戳的次数").register(registry);
+        FunctionCounter.builder(PREFIX + "cas.retry", metrics, IdGenerateMetrics::getCasRetry)
+                .tags(tags).description("CAS失败重试次数").register(registry);
+        FunctionTimer.builder(PREFIX + "lock.wait", metrics, IdGenerateMetrics::getLockAcquire,
+                IdGenerateMetrics::getLockWaitNanos, TimeUnit.NANOSECONDS)
+                .tags(tags).description("等待锁的时间").register(registry);
+        Gauge.builder(PREFIX + "borrow.ahead", idGenerate, MeasurableIdGenerate::getBorrowAheadMillis)
+                .tags(tags).baseUnit("milliseconds").description("借用超前的毫秒数").register(registry);
+        if(idGenerate instanceof AbstractIdGenerate){
+            FunctionCounter.builder(PREFIX + "clock.regression", (AbstractIdGenerate) idGenerate,
+                    AbstractIdGenerate::getClockRegressionCount)
+                    .tags(tags).description("时钟回拨次数").register(registry);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.msh.starter.id.generate.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * id生成器的统计数据
+ * 使用LongAdder分段累加，多线程同时记录时不会因为统计本身产生竞争
+ * 调用id生成器的enableMetrics()后开始记录，未开启时不记录
+ */
+public class IdGenerateMetrics {
+    /**
+     * 生成id数
+     */
+    private final LongAdder issued = new LongAdder();
+    /**
+     * 一个时间戳内计数用完，借用下一个时间戳的次数
+     */
+    private final LongAdder overflow = new LongAdder();
+    /**
+     * 加锁模式获取锁的次数
+     */
+    private final LongAdder lockAcquire = new LongAdder();
+    /**
+     * 加锁模式等待锁的纳秒数
+     */
+    private final LongAdder lockWaitNanos = new LongAdder();
+    /**
+     * 无锁模式CAS失败重试次数
+     */
+    private final LongAdder casRetry = new LongAdder();
+
+    public void recordIssued(long count) {
+        issued.add(count);
+    }
+
+    public void recordOverflow() {
+        overflow.increment();
+    }
+
+    public void recordLockWait(long nanos) {
+        lockAcquire.increment();
+        lockWaitNanos.add(nanos);
+    }
+
+    public void recordCasRetry() {
+        casRetry.increment();
+    }
+
+    public long getIssued() {
+        return issued.sum();
+    }
+
+    public long getOverflow() {
+        return overflow.sum();
+    }
+
+    public long getLockAcquire() {
+        return lockAcquire.sum();
+    }
+
+    public long getLockWaitNanos() {
+        return lockWaitNanos.sum();
+    }
+
+    public long getCasRetry() {
+        return casRetry.sum();
+    }
+}
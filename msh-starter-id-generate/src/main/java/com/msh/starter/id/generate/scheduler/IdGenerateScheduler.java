@@ -0,0 +1,78 @@
+package com.msh.starter.id.generate.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * id生成器共用的定时任务线程
+ * 所有id生成器的定时任务(跨天刷新日期头，服务器id续约等)使用同一个后台线程，
+ * 不为每个对象单独创建线程
+ * 任务通过返回的ScheduledFuture取消，取消后立即从队列中移除
+ * 任务抛出异常时记录日志，周期任务继续执行
+ */
+@Slf4j
+public class IdGenerateScheduler {
+    private static volatile IdGenerateScheduler instance;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private IdGenerateScheduler() {
+        executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "id-generate-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * 获取共用的定时任务线程，第一次调用时创建
+     * @return
+     */
+    public static IdGenerateScheduler getInstance(){
+        if(null == instance){
+            synchronized (IdGenerateScheduler.class){
+                if(null == instance){
+                    instance = new IdGenerateScheduler();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 延迟执行一次
+     * @param task
+     * @param delay
+     * @param unit
+     * @return
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit){
+        return executor.schedule(wrap(task), delay, unit);
+    }
+
+    /**
+     * 上一次执行结束后间隔delay再次执行
+     * @param task
+     * @param initialDelay
+     * @param delay
+     * @param unit
+     * @return
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit){
+        return executor.scheduleWithFixedDelay(wrap(task), initialDelay, delay, unit);
+    }
+
+    private static Runnable wrap(Runnable task){
+        return () -> {
+            try {
+                task.run();
+            }catch (Exception e){
+                log.error("id generate scheduled task error", e);
+            }
+        };
+    }
+}
@@ -0,0 +1,313 @@
+package com.msh.starter.id.generate.segment;
+
+import com.msh.starter.id.generate.interfaces.BatchIdGenerateable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 号段模式id生成器
+ * 通过redis INCRBY 一次获取一个号段，在本地内存中分配
+ * 当前号段使用超过loadFactor时后台获取下一个号段(双缓冲)，切换号段时不需要等待redis
+ * 切换号段时后台加载还没有完成则等待该加载，不重复INCRBY，保证下一个号段大于当前号段
+ * ---------------------------------------------------------------
+ * 与AbstractIdGenerate相比:
+ * 生成的id连续且较小，不依赖时钟
+ * 每个号段只访问一次redis
+ * 不同服务的id不保证递增，同一服务内递增
+ * ---------------------------------------------------------------
+ * 号段大小根据消耗速度调整:
+ * 一个号段在segmentDurationMillis内用完时号段大小翻倍(不超过maxStep)
+ * 超过2倍segmentDurationMillis才用完时号段大小减半(不小于minStep)
+ * 需要引入msh-starter-redis
+ */
+@Slf4j
+public class RedisSegmentIdGenerate implements BatchIdGenerateable {
+    private static final String PREFIX_SEGMENT_KEY = "id_segment:";
+    /**
+     * 使用超过该比例时加载下一个号段
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.2;
+    private static final long DEFAULT_SEGMENT_DURATION_MILLIS = 60 * 1000L;
+
+    /**
+     * 所有号段id生成器共用的号段加载线程
+     */
+    private static final ExecutorService SEGMENT_LOADER = new ThreadPoolExecutor(1, 1,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+        Thread thread = new Thread(r, "id-segment-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final RedisTemplate redisTemplate;
+    private final byte[] key;
+    private final String bizKey;
+    private final long minStep;
+    private final long maxStep;
+    private final double loadFactor;
+    private final long segmentDurationMillis;
+
+    /**
+     * 当前号段大小，持有锁时修改
+     */
+    private volatile long step;
+    /**
+     * 上一次获取号段的时间，持有锁时修改
+     */
+    private volatile long lastLoadMillis;
+    /**
+     * 当前使用的号段
+     */
+    private volatile Segment current;
+    /**
+     * 预先加载的下一个号段
+     */
+    private volatile Segment next;
+    /**
+     * 正在后台加载的下一个号段，持有锁时修改
+     */
+    private volatile CompletableFuture<Segment> loadingSegment;
+
+    /**
+     * @param redisTemplate
+     * @param bizKey 业务key，不同业务的id独立递增
+     */
+    public RedisSegmentIdGenerate(RedisTemplate redisTemplate, String bizKey) {
+        this(redisTemplate, bizKey, 1000L, 1000L, 1000000L);
+    }
+
+    /**
+     * @param redisTemplate
+     * @param bizKey 业务key，不同业务的id独立递增
+     * @param initStep 初始号段大小
+     * @param minStep 最小号段大小
+     * @param maxStep 最大号段大小
+     */
+    public RedisSegmentIdGenerate(RedisTemplate redisTemplate, String bizKey, long initStep, long minStep, long maxStep) {
+        this(redisTemplate, bizKey, initStep, minStep, maxStep, DEFAULT_LOAD_FACTOR, DEFAULT_SEGMENT_DURATION_MILLIS);
+    }
+
+    /**
+     * @param redisTemplate
+     * @param bizKey 业务key，不同业务的id独立递增
+     * @param initStep 初始号段大小
+     * @param minStep 最小号段大小
+     * @param maxStep 最大号段大小
+     * @param loadFactor 当前号段使用超过该比例时加载下一个号段
+     * @param segmentDurationMillis 期望一个号段使用的毫秒数
+     */
+    public RedisSegmentIdGenerate(RedisTemplate redisTemplate, String bizKey, long initStep, long minStep, long maxStep,
+                                  double loadFactor, long segmentDurationMillis) {
+        if(minStep <= 0 || minStep > maxStep || initStep < minStep || initStep > maxStep){
+            throw new IllegalArgumentException("step must be 0 < minStep <= initStep <= maxStep");
+        }
+        this.redisTemplate = redisTemplate;
+        this.bizKey = bizKey;
+        this.key = redisTemplate.getKeySerializer().serialize(PREFIX_SEGMENT_KEY + bizKey);
+        this.step = initStep;
+        this.minStep = minStep;
+        this.maxStep = maxStep;
+        this.loadFactor = loadFactor;
+        this.segmentDurationMillis = segmentDurationMillis;
+        this.current = loadSegment(adjustStep(System.currentTimeMillis()));
+    }
+
+    @Override
+    public long getUniqueID() {
+        for(;;){
+            Segment segment = current;
+            long value = segment.cursor.getAndIncrement();
+            if(value < segment.end){
+                if(value >= segment.loadThreshold && null == next){
+                    loadNextAsync();
+                }
+                return value;
+            }
+            switchSegment(segment);
+        }
+    }
+
+    @Override
+    public long[] getUniqueIDs(int count) {
+        long[] ids = new long[Math.max(count, 0)];
+        int filled = 0;
+        while(filled < count){
+            Segment segment = current;
+            int want = count - filled;
+            long first = segment.cursor.getAndAdd(want);
+            if(first < segment.end){
+                long take = Math.min(want, segment.end - first);
+                for(long j = 0; j < take; j++){
+                    ids[filled++] = first + j;
+                }
+                if(first + take >= segment.loadThreshold && null == next){
+                    loadNextAsync();
+                }
+            }
+            if(filled < count){
+                switchSegment(segment);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 当前号段用完，切换到下一个号段
+     * 后台正在加载时不持有锁等待该加载完成(加载完成后需要获取锁)，没有加载或加载失败时同步加载
+     * 不使用小于当前号段的号段
+     * @param used 用完的号段
+     */
+    private void switchSegment(Segment used){
+        CompletableFuture<Segment> loading;
+        synchronized (this){
+            if(current != used){
+                return;
+            }
+            loading = null == next ? loadingSegment : null;
+        }
+        Segment loaded = null == loading ? null : awaitSegment(loading);
+        synchronized (this){
+            if(current != used){
+                return;
+            }
+            Segment segment = next;
+            next = null;
+            if(null == segment && null != loading && loadingSegment == loading){
+                loadingSegment = null;
+                segment = loaded;
+            }
+            if(null != segment && segment.start < used.end){
+                log.warn("drop stale id segment, key : {}, start : {}, current end : {}", bizKey, segment.start, used.end);
+                segment = null;
+            }
+            if(null == segment){
+                segment = loadSegment(adjustStep(System.currentTimeMillis()));
+            }
+            current = segment;
+        }
+    }
+
+    /**
+     * 等待后台加载的号段
+     * @param loading
+     * @return 加载失败时返回null
+     */
+    private Segment awaitSegment(CompletableFuture<Segment> loading){
+        try {
+            return loading.get();
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        }catch (ExecutionException e){
+            log.warn("load id segment error, key : {}", bizKey, e.getCause());
+            return null;
+        }
+    }
+
+    private void loadNextAsync(){
+        if(null != loadingSegment || null != next){
+            return;
+        }
+        synchronized (this){
+            if(null != loadingSegment || null != next){
+                return;
+            }
+            long currentStep = adjustStep(System.currentTimeMillis());
+            try {
+                CompletableFuture<Segment> loading = CompletableFuture.supplyAsync(() -> loadSegment(currentStep), SEGMENT_LOADER);
+                loadingSegment = loading;
+                loading.whenComplete((segment, e) -> installNext(loading, segment, e));
+            }catch (Exception e){
+                log.warn("submit load id segment error, key : {}", bizKey, e);
+            }
+        }
+    }
+
+    /**
+     * 后台加载完成后设置为下一个号段
+     * 已经被switchSegment取走时不处理
+     * @param loading
+     * @param segment
+     * @param e
+     */
+    private synchronized void installNext(CompletableFuture<Segment> loading, Segment segment, Throwable e){
+        if(loadingSegment != loading){
+            return;
+        }
+        loadingSegment = null;
+        if(null != e){
+            log.warn("load id segment error, key : {}", bizKey, e);
+            return;
+        }
+        if(null == next && segment.start >= current.end){
+            next = segment;
+        }
+    }
+
+    /**
+     * 通过 INCRBY 获取一个号段
+     * @param currentStep 号段大小
+     * @return
+     */
+    private Segment loadSegment(long currentStep){
+        Object obj = redisTemplate.execute((RedisCallback<Object>) connection -> connection.incrBy(key, currentStep));
+        if(null == obj){
+            throw new RuntimeException("can not load id segment from redis, key : " + bizKey);
+        }
+        long end = ((Number) obj).longValue() + 1;
+        long start = end - currentStep;
+        return new Segment(start, end, start + (long) (currentStep * loadFactor));
+    }
+
+    /**
+     * 根据上一个号段的使用时间调整号段大小
+     * 需要在持有锁时调用
+     * @param now
+     * @return 本次加载的号段大小
+     */
+    private long adjustStep(long now){
+        long currentStep = step;
+        long last = lastLoadMillis;
+        lastLoadMillis = now;
+        if(0 == last){
+            return currentStep;
+        }
+        long duration = now - last;
+        if(duration < segmentDurationMillis){
+            currentStep = Math.min(maxStep, currentStep * 2);
+        }else if(duration > segmentDurationMillis * 2){
+            currentStep = Math.max(minStep, currentStep / 2);
+        }
+        step = currentStep;
+        return currentStep;
+    }
+
+    /**
+     * 号段 [start, end)
+     */
+    private static final class Segment {
+        private final long start;
+        private final long end;
+        /**
+         * 分配到该值时加载下一个号段
+         */
+        private final long loadThreshold;
+        private final AtomicLong cursor;
+
+        private Segment(long start, long end, long loadThreshold) {
+            this.start = start;
+            this.end = end;
+            this.loadThreshold = loadThreshold;
+            this.cursor = new AtomicLong(start);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.msh.starter.id.generate.store;
+
+import com.msh.starter.id.generate.interfaces.HighWaterMarkStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 使用内存映射文件保存时间戳高水位
+ * 文件16字节: 0-7 时间戳，8-15 文件标识
+ * store只是写入映射内存，进程异常退出时由操作系统写回文件，
+ * 关闭时调用force写入磁盘，机器断电时可能丢失最后的写入
+ * 每个id生成器需要使用单独的文件
+ */
+@Slf4j
+public class MappedFileHighWaterMarkStore implements HighWaterMarkStore, DisposableBean {
+    private static final int FILE_SIZE = 16;
+    private static final int VALUE_OFFSET = 0;
+    private static final int MAGIC_OFFSET = 8;
+    private static final long MAGIC = 0x6D73682D68776D31L;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    /**
+     * @param path 文件路径，不存在时创建
+     */
+    public MappedFileHighWaterMarkStore(String path) {
+        File file = new File(path);
+        File parent = file.getAbsoluteFile().getParentFile();
+        if(null != parent && !parent.exists() && !parent.mkdirs()){
+            throw new IllegalStateException("can not create directory " + parent);
+        }
+        try {
+            this.channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if(buffer.getLong(MAGIC_OFFSET) != MAGIC){
+            buffer.putLong(VALUE_OFFSET, 0L);
+            buffer.putLong(MAGIC_OFFSET, MAGIC);
+        }
+    }
+
+    @Override
+    public long load() {
+        return buffer.getLong(VALUE_OFFSET);
+    }
+
+    @Override
+    public synchronized void store(long timeMillis) {
+        if(timeMillis > buffer.getLong(VALUE_OFFSET)){
+            buffer.putLong(VALUE_OFFSET, timeMillis);
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            log.error("close high water mark file fail", e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.msh.starter.id.generate.ulid;
+
+/**
+ * 128位id
+ * 高48位为毫秒时间戳(1970-01-01开始)，低80位为服务器id，计数和随机数
+ * 按无符号数比较的顺序与字符串顺序一致
+ */
+public final class Ulid implements Comparable<Ulid> {
+    private final long mostSignificantBits;
+    private final long leastSignificantBits;
+
+    public Ulid(long mostSignificantBits, long leastSignificantBits) {
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+    }
+
+    public long getMostSignificantBits() {
+        return mostSignificantBits;
+    }
+
+    public long getLeastSignificantBits() {
+        return leastSignificantBits;
+    }
+
+    /**
+     * 生成时的时间戳
+     * @return
+     */
+    public long getTimestamp() {
+        return mostSignificantBits >>> 16;
+    }
+
+    /**
+     * 编码写入dst
+     * @param dst
+     * @param offset 起始位置，需要有26位空间
+     */
+    public void encode(char[] dst, int offset) {
+        UlidCodec.encode(mostSignificantBits, leastSignificantBits, dst, offset);
+    }
+
+    /**
+     * 编码(ASCII)写入dst
+     * @param dst
+     * @param offset 起始位置，需要有26位空间
+     */
+    public void encode(byte[] dst, int offset) {
+        UlidCodec.encode(mostSignificantBits, leastSignificantBits, dst, offset);
+    }
+
+    public static Ulid parse(CharSequence src) {
+        if(null == src || src.length() != UlidCodec.LENGTH){
+            throw new IllegalArgumentException("ulid length must be " + UlidCodec.LENGTH);
+        }
+        long msb = 0L;
+        long lsb = 0L;
+        for(int i = 0; i < UlidCodec.LENGTH; i++){
+            long v = UlidCodec.decodeChar(src.charAt(i));
+            msb = (msb << 5) | (lsb >>> 59);
+            lsb = (lsb << 5) | v;
+        }
+        UlidCodec.checkFirst(src.charAt(0));
+        return new Ulid(msb, lsb);
+    }
+
+    public static Ulid parse(char[] src, int offset) {
+        return new Ulid(UlidCodec.decodeMostSignificantBits(src, offset), UlidCodec.decodeLeastSignificantBits(src, offset));
+    }
+
+    public static Ulid parse(byte[] src, int offset) {
+        return new Ulid(UlidCodec.decodeMostSignificantBits(src, offset), UlidCodec.decodeLeastSignificantBits(src, offset));
+    }
+
+    @Override
+    public int compareTo(Ulid o) {
+        int c = Long.compareUnsigned(mostSignificantBits, o.mostSignificantBits);
+        return c != 0 ? c : Long.compareUnsigned(leastSignificantBits, o.leastSignificantBits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o){
+            return true;
+        }
+        if(!(o instanceof Ulid)){
+            return false;
+        }
+        Ulid ulid = (Ulid) o;
+        return mostSignificantBits == ulid.mostSignificantBits && leastSignificantBits == ulid.leastSignificantBits;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = mostSignificantBits ^ leastSignificantBits;
+        return (int) (h >> 32) ^ (int) h;
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[UlidCodec.LENGTH];
+        encode(chars, 0);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,126 @@
+package com.msh.starter.id.generate.ulid;
+
+/**
+ * 128位id的Crockford base32编码
+ * 26位字符，第一位只使用3位(0-7)，之后每位5位
+ * 编码直接写入char[]或byte[]，不生成中间对象
+ * 解码不区分大小写，I L 按 1，O 按 0 处理
+ */
+public final class UlidCodec {
+    /**
+     * 编码后长度
+     */
+    public static final int LENGTH = 26;
+
+    private static final char[] ENCODE = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        java.util.Arrays.fill(DECODE, (byte) -1);
+        for(int i = 0; i < ENCODE.length; i++){
+            DECODE[ENCODE[i]] = (byte) i;
+            DECODE[Character.toLowerCase(ENCODE[i])] = (byte) i;
+        }
+        DECODE['I'] = 1;
+        DECODE['i'] = 1;
+        DECODE['L'] = 1;
+        DECODE['l'] = 1;
+        DECODE['O'] = 0;
+        DECODE['o'] = 0;
+    }
+
+    private UlidCodec() {
+    }
+
+    public static void encode(long msb, long lsb, char[] dst, int offset) {
+        checkRange(dst.length, offset);
+        for(int i = 0; i < LENGTH; i++){
+            dst[offset + i] = ENCODE[charValue(msb, lsb, i)];
+        }
+    }
+
+    public static void encode(long msb, long lsb, byte[] dst, int offset) {
+        checkRange(dst.length, offset);
+        for(int i = 0; i < LENGTH; i++){
+            dst[offset + i] = (byte) ENCODE[charValue(msb, lsb, i)];
+        }
+    }
+
+    public static long decodeMostSignificantBits(char[] src, int offset) {
+        checkRange(src.length, offset);
+        checkFirst(src[offset]);
+        long msb = 0L;
+        //前13位字符为最高65位，其中最高2位为0
+        for(int i = 0; i < 13; i++){
+            msb = (msb << 5) | decodeChar(src[offset + i]);
+        }
+        return (msb << 1) | (decodeChar(src[offset + 13]) >>> 4);
+    }
+
+    public static long decodeLeastSignificantBits(char[] src, int offset) {
+        checkRange(src.length, offset);
+        long lsb = decodeChar(src[offset + 13]) & 0xF;
+        for(int i = 14; i < LENGTH; i++){
+            lsb = (lsb << 5) | decodeChar(src[offset + i]);
+        }
+        return lsb;
+    }
+
+    public static long decodeMostSignificantBits(byte[] src, int offset) {
+        checkRange(src.length, offset);
+        checkFirst((char) src[offset]);
+        long msb = 0L;
+        for(int i = 0; i < 13; i++){
+            msb = (msb << 5) | decodeChar((char) src[offset + i]);
+        }
+        return (msb << 1) | (decodeChar((char) src[offset + 13]) >>> 4);
+    }
+
+    public static long decodeLeastSignificantBits(byte[] src, int offset) {
+        checkRange(src.length, offset);
+        long lsb = decodeChar((char) src[offset + 13]) & 0xF;
+        for(int i = 14; i < LENGTH; i++){
+            lsb = (lsb << 5) | decodeChar((char) src[offset + i]);
+        }
+        return lsb;
+    }
+
+    /**
+     * 第index位字符的值
+     * 第0位为最高3位，第index位对应从最高位开始第 index * 5 - 2 位起的5位
+     */
+    private static int charValue(long msb, long lsb, int index) {
+        if(index == 0){
+            return (int) (msb >>> 61);
+        }
+        int bit = index * 5 - 2;
+        if(bit + 5 <= 64){
+            return (int) (msb >>> (59 - bit)) & 31;
+        }
+        if(bit >= 64){
+            return (int) (lsb >>> (123 - bit)) & 31;
+        }
+        //跨越高低64位
+        return (int) ((msb << (bit - 59)) | (lsb >>> (123 - bit))) & 31;
+    }
+
+    static long decodeChar(char c) {
+        byte v = c < 128 ? DECODE[c] : -1;
+        if(v < 0){
+            throw new IllegalArgumentException("invalid ulid char " + c);
+        }
+        return v;
+    }
+
+    static void checkFirst(char c) {
+        if(decodeChar(c) > 7){
+            throw new IllegalArgumentException("ulid overflow, first char must be 0-7");
+        }
+    }
+
+    private static void checkRange(int length, int offset) {
+        if(offset < 0 || offset > length - LENGTH){
+            throw new IndexOutOfBoundsException("need " + LENGTH + " chars from offset " + offset);
+        }
+    }
+}
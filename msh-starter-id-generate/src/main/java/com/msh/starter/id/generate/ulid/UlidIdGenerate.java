@@ -0,0 +1,72 @@
+package com.msh.starter.id.generate.ulid;
+
+import com.msh.starter.id.generate.abstracts.AbstractIdGenerate;
+import com.msh.starter.id.generate.interfaces.UlidGenerateable;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 128位按时间排序的id生成器
+ * 使用AbstractIdGenerate生成64位id，时间戳转为1970-01-01开始的毫秒数放在最高48位，
+ * 之后为64位id中的服务器id和计数，剩余低位填充随机数
+ * 服务器id和计数与64位id相同，不同服务，同一毫秒内生成的id不会重复
+ * ---------------------------------------------------------------
+ * |48位时间戳|服务器id|计数|随机数|
+ * 服务器id和计数所占位数不能超过64位
+ */
+public class UlidIdGenerate implements UlidGenerateable {
+    private static final int PAYLOAD_BIT_COUNT = 80;
+
+    private final AbstractIdGenerate idGenerate;
+    /**
+     * 随机数所占位数
+     */
+    private final int randomBitCount;
+
+    public UlidIdGenerate(AbstractIdGenerate idGenerate) {
+        int nodeSequenceBitCount = idGenerate.getIdNodeSequenceBitCount();
+        if(nodeSequenceBitCount > 64){
+            throw new IllegalArgumentException("node sequence bit count must not be greater than 64");
+        }
+        this.idGenerate = idGenerate;
+        this.randomBitCount = PAYLOAD_BIT_COUNT - nodeSequenceBitCount;
+    }
+
+    @Override
+    public Ulid getUniqueUlid() {
+        long id = idGenerate.getUniqueID();
+        return new Ulid(mostSignificantBits(id), leastSignificantBits(id));
+    }
+
+    @Override
+    public void getUniqueUlid(char[] dst, int offset) {
+        long id = idGenerate.getUniqueID();
+        UlidCodec.encode(mostSignificantBits(id), leastSignificantBits(id), dst, offset);
+    }
+
+    @Override
+    public void getUniqueUlid(byte[] dst, int offset) {
+        long id = idGenerate.getUniqueID();
+        UlidCodec.encode(mostSignificantBits(id), leastSignificantBits(id), dst, offset);
+    }
+
+    private long mostSignificantBits(long id) {
+        long nodeSequence = idGenerate.getIdNodeSequence(id);
+        long high;
+        if(randomBitCount >= 64){
+            high = (nodeSequence << (randomBitCount - 64))
+                    | (ThreadLocalRandom.current().nextLong() & ((1L << (randomBitCount - 64)) - 1));
+        }else {
+            high = nodeSequence >>> (64 - randomBitCount);
+        }
+        return (idGenerate.getIdTimeMillis(id) << 16) | (high & 0xFFFF);
+    }
+
+    private long leastSignificantBits(long id) {
+        long random = ThreadLocalRandom.current().nextLong();
+        if(randomBitCount >= 64){
+            return random;
+        }
+        return (idGenerate.getIdNodeSequence(id) << randomBitCount) | (random & ((1L << randomBitCount) - 1));
+    }
+}
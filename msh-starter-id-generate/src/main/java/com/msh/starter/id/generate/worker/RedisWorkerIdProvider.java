@@ -0,0 +1,297 @@
+package com.msh.starter.id.generate.worker;
+
+import com.msh.frame.common.util.IpUtil;
+import com.msh.starter.id.generate.interfaces.WorkerIdProvider;
+import com.msh.starter.id.generate.scheduler.IdGenerateScheduler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.Charset;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 通过redis租用服务器id
+ * key: id_worker:应用名:服务器id  value: 当前服务的唯一标识
+ * 先尝试从ip计算出的服务器id，再从随机位置开始依次尝试 SET NX EX，设置成功则租用该服务器id
+ * 每次租用最多尝试maxLeaseProbes个服务器id，服务器id快用完时不会在一次租用中遍历全部服务器id
+ * 每 租期/3 续约一次，只续约自己持有的key，续约在id生成器共用的定时任务线程中执行
+ * 服务关闭时释放
+ * ---------------------------------------------------------------
+ * 租约保护:
+ * 从最后一次成功续约(发送续约命令之前的时间)开始超过 租期 - 租期/10 后，getWorkerId()不再返回该服务器id，
+ * key被其他服务占用时立即失效
+ * 第一次getWorkerId()(id生成器初始化时)在调用线程中租用，
+ * 之后失效时getWorkerId()立即抛出异常，在定时任务线程中重新租用，id生成器在租用成功前不生成id，
+ * 租用失败时间隔leaseRetryMillis后由下一次getWorkerId()再次提交
+ * ---------------------------------------------------------------
+ * 同一个应用的多个服务不会获得相同的服务器id，
+ * 可以使用服务器id的全部范围，不会因为ip取模重复导致id重复
+ */
+@Slf4j
+public class RedisWorkerIdProvider implements WorkerIdProvider, DisposableBean {
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+    private static final String PREFIX_WORKER_KEY = "id_worker:";
+    /**
+     * 只续约自己持有的key
+     */
+    private static final byte[] RENEW_SCRIPT = ("if redis.call('get', KEYS[1]) == ARGV[1] " +
+            "then return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end").getBytes(DEFAULT_CHARSET);
+    /**
+     * 只删除自己持有的key
+     */
+    private static final byte[] RELEASE_SCRIPT = ("if redis.call('get', KEYS[1]) == ARGV[1] " +
+            "then return redis.call('del', KEYS[1]) else return 0 end").getBytes(DEFAULT_CHARSET);
+    /**
+     * 一次租用最多尝试的服务器id个数
+     */
+    private static final int DEFAULT_MAX_LEASE_PROBES = 64;
+    /**
+     * 重新租用失败后再次提交的间隔
+     */
+    private static final long LEASE_RETRY_MILLIS = 1000L;
+
+    private final RedisTemplate redisTemplate;
+    private final RedisSerializer keySerializer;
+    private final String keyPrefix;
+    /**
+     * 服务器id个数，租用的服务器id范围 [0, workerIdCount)
+     */
+    private final int workerIdCount;
+    /**
+     * 租期 秒
+     */
+    private final long leaseSeconds;
+    /**
+     * 一次租用最多尝试的服务器id个数
+     */
+    private final int maxLeaseProbes;
+    /**
+     * 当前服务的唯一标识
+     */
+    private final byte[] owner;
+
+    /**
+     * 租约失效前预留的毫秒数
+     */
+    private final long leaseMarginMillis;
+
+    private volatile Integer workerId;
+    private volatile byte[] workerKey;
+    /**
+     * 租约有效截止时间戳，超过后服务器id失效
+     */
+    private volatile long leaseDeadline;
+    /**
+     * 已释放服务器id，不再租用
+     */
+    private volatile boolean destroyed;
+    private ScheduledFuture<?> renewFuture;
+    /**
+     * 是否已经提交了重新租用的任务
+     */
+    private final AtomicBoolean leasing = new AtomicBoolean(false);
+    /**
+     * 下一次可以提交重新租用任务的时间
+     */
+    private volatile long nextLeaseMillis;
+
+    /**
+     * @param redisTemplate
+     * @param applicationName 应用名，同一应用内服务器id唯一
+     * @param workerIdCount 服务器id个数
+     * @param leaseSeconds 租期 秒
+     */
+    public RedisWorkerIdProvider(RedisTemplate redisTemplate, String applicationName, int workerIdCount, long leaseSeconds) {
+        this(redisTemplate, applicationName, workerIdCount, leaseSeconds, DEFAULT_MAX_LEASE_PROBES);
+    }
+
+    /**
+     * @param redisTemplate
+     * @param applicationName 应用名，同一应用内服务器id唯一
+     * @param workerIdCount 服务器id个数
+     * @param leaseSeconds 租期 秒
+     * @param maxLeaseProbes 一次租用最多尝试的服务器id个数
+     */
+    public RedisWorkerIdProvider(RedisTemplate redisTemplate, String applicationName, int workerIdCount, long leaseSeconds,
+                                 int maxLeaseProbes) {
+        this.redisTemplate = redisTemplate;
+        this.keySerializer = redisTemplate.getKeySerializer();
+        this.keyPrefix = PREFIX_WORKER_KEY + applicationName + ":";
+        this.workerIdCount = workerIdCount;
+        this.leaseSeconds = leaseSeconds;
+        this.maxLeaseProbes = Math.max(1, Math.min(maxLeaseProbes, workerIdCount));
+        this.leaseMarginMillis = leaseSeconds * 1000L / 10;
+        this.owner = (IpUtil.getLocalIP() + ":" + UUID.randomUUID()).getBytes(DEFAULT_CHARSET);
+    }
+
+    @Override
+    public Integer getWorkerId() {
+        Integer id = workerId;
+        if(null != id && System.currentTimeMillis() < leaseDeadline){
+            return id;
+        }
+        if(destroyed){
+            throw new IllegalStateException("worker id provider is destroyed");
+        }
+        if(null == id){
+            synchronized (this){
+                if(null == workerId && !destroyed){
+                    lease();
+                }
+            }
+            return getWorkerId();
+        }
+        leaseAsync();
+        throw new IllegalStateException("worker id " + id + " lease is invalid, waiting for a new worker id");
+    }
+
+    /**
+     * 在定时任务线程中重新租用
+     * 已提交或距上次失败不足LEASE_RETRY_MILLIS时不提交
+     */
+    private void leaseAsync(){
+        if(System.currentTimeMillis() < nextLeaseMillis || !leasing.compareAndSet(false, true)){
+            return;
+        }
+        try {
+            IdGenerateScheduler.getInstance().schedule(() -> {
+                try {
+                    synchronized (this){
+                        if(destroyed || System.currentTimeMillis() < leaseDeadline){
+                            return;
+                        }
+                        log.error("worker id {} lease is invalid, lease a new worker id", workerId);
+                        lease();
+                    }
+                }catch (RuntimeException e){
+                    nextLeaseMillis = System.currentTimeMillis() + LEASE_RETRY_MILLIS;
+                    throw e;
+                }finally {
+                    leasing.set(false);
+                }
+            }, 0L, TimeUnit.MILLISECONDS);
+        }catch (RuntimeException e){
+            leasing.set(false);
+            log.warn("submit lease worker id error", e);
+        }
+    }
+
+    /**
+     * 先尝试从ip计算出的服务器id，再从随机位置开始依次尝试，最多尝试maxLeaseProbes个
+     * 需要在持有锁时调用
+     */
+    private void lease(){
+        if(null != renewFuture){
+            renewFuture.cancel(false);
+            renewFuture = null;
+        }
+        int start = startWorkerId();
+        int random = ThreadLocalRandom.current().nextInt(workerIdCount);
+        for(int i = 0; i < maxLeaseProbes; i++){
+            int id = 0 == i ? start : (random + i) % workerIdCount;
+            byte[] key = keySerializer.serialize(keyPrefix + id);
+            long begin = System.currentTimeMillis();
+            if(setIfAbsent(key)){
+                workerKey = key;
+                workerId = id;
+                leaseDeadline = deadline(begin);
+                startRenew();
+                log.info("lease worker id {} from redis", id);
+                return;
+            }
+        }
+        throw new RuntimeException("can not lease worker id from redis, " + maxLeaseProbes + " of " + workerIdCount + " worker ids are in use");
+    }
+
+    private long deadline(long begin){
+        return begin + leaseSeconds * 1000L - leaseMarginMillis;
+    }
+
+    private int startWorkerId(){
+        String localIP = IpUtil.getLocalIP();
+        if(null == localIP){
+            return ThreadLocalRandom.current().nextInt(workerIdCount);
+        }
+        return (0xFFFF & IpUtil.ipStringToInterger(localIP)) % workerIdCount;
+    }
+
+    private boolean setIfAbsent(byte[] key){
+        Object obj = redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.set(key, owner, Expiration.seconds(leaseSeconds), RedisStringCommands.SetOption.SET_IF_ABSENT));
+        return obj != null && (Boolean) obj;
+    }
+
+    private void startRenew(){
+        long period = Math.max(1L, leaseSeconds / 3);
+        renewFuture = IdGenerateScheduler.getInstance().scheduleWithFixedDelay(this::renew, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 续约
+     * 续约失败(key已过期)时重新尝试租用同一个服务器id
+     * key被其他服务占用时服务器id立即失效
+     */
+    private void renew(){
+        byte[] key = workerKey;
+        long begin = System.currentTimeMillis();
+        try {
+            Object obj = redisTemplate.execute((RedisCallback<Object>) connection ->
+                    connection.eval(RENEW_SCRIPT, ReturnType.INTEGER, 1,
+                            key, owner, String.valueOf(leaseSeconds).getBytes(DEFAULT_CHARSET)));
+            if(null != obj && ((Number) obj).longValue() > 0){
+                renewed(key, begin);
+                return;
+            }
+            if(setIfAbsent(key)){
+                log.warn("worker id {} lease expired, lease again", workerId);
+                renewed(key, begin);
+            }else {
+                synchronized (this){
+                    if(key == workerKey){
+                        leaseDeadline = 0L;
+                    }
+                }
+                log.error("worker id {} lease is taken by another service, stop generating ids until a new worker id is leased", workerId);
+            }
+        }catch (Exception e){
+            log.warn("renew worker id {} error, lease is valid until {}", workerId, leaseDeadline, e);
+        }
+    }
+
+    private synchronized void renewed(byte[] key, long begin){
+        if(key == workerKey){
+            leaseDeadline = Math.max(leaseDeadline, deadline(begin));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if(null != renewFuture){
+            renewFuture.cancel(false);
+        }
+        synchronized (this){
+            destroyed = true;
+            leaseDeadline = 0L;
+        }
+        byte[] key = workerKey;
+        if(null == key){
+            return;
+        }
+        try {
+            redisTemplate.execute((RedisCallback<Object>) connection ->
+                    connection.eval(RELEASE_SCRIPT, ReturnType.INTEGER, 1, key, owner));
+        }catch (Exception e){
+            log.warn("release worker id {} error", workerId, e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.msh.starter.redis.cache;
+
+import com.msh.frame.interfaces.ICache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 可批量操作的缓存
+ * 多个key一次请求，不需要每个key访问一次redis
+ * @param <K>
+ * @param <V>
+ */
+public interface IBatchCache<K,V> extends ICache<K,V> {
+    /**
+     * 批量获取
+     * @param keys
+     * @return 不存在的key不在返回结果中
+     */
+    Map<K,V> getAll(Collection<K> keys);
+
+    /**
+     * 批量放入，不设置过期时间
+     * @param map
+     */
+    void putAll(Map<K,V> map);
+
+    /**
+     * 批量放入，每个key设置相同的过期时间
+     * @param map
+     * @param expireSecond
+     */
+    void putAll(Map<K,V> map, long expireSecond);
+
+    /**
+     * 批量删除
+     * @param keys
+     */
+    void removeAll(Collection<K> keys);
+}
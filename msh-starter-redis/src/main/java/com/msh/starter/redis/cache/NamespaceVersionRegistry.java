@@ -0,0 +1,285 @@
+package com.msh.starter.redis.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带版本号的命名空间
+ * 缓存key以namespaces中的前缀开头时，在前缀后加入该命名空间的版本号
+ * 例: list:xxx 变为 list:3:xxx
+ * 清空命名空间时只需要INCR版本号，旧版本的key不再被访问，等待过期时间后删除
+ * ---------------------------------------------------------------
+ * 版本号保存在redis的 ns_version:缓存名称:命名空间 中
+ * 本地保存版本号，超过refreshMillis后重新读取，
+ * INCR后通过redis发布订阅通知其他服务，收到后直接更新本地版本号
+ * 通知丢失时，其他服务最多refreshMillis后读取到新版本号
+ * clearOld为true时，INCR后在后台线程删除所有旧版本的key
+ * 每个命名空间最多一个未完成的删除任务，两次删除间隔不小于clearOldIntervalMillis，
+ * 间隔内的INCR不删除，由下一次删除一起处理，写入频繁时不会每次INCR都SCAN
+ * clearOld为false时旧版本的key等待过期时间后才删除，期间一直占用内存
+ */
+public class NamespaceVersionRegistry implements MessageListener {
+    private static Logger LOGGER = LoggerFactory.getLogger(NamespaceVersionRegistry.class);
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+    private static final String PREFIX_VERSION_KEY = "ns_version:";
+    private static final char SEPARATOR = '\n';
+
+    private final RedisTemplate redisTemplate;
+    private final List<String> namespaces;
+    private final long refreshMillis;
+    private final String channelName;
+    private final byte[] channel;
+    private final boolean clearOld;
+    private final long clearOldIntervalMillis;
+    private final Map<String, Version> versions = new ConcurrentHashMap<>();
+    /**
+     * 命名空间最后一次提交的删除旧版本任务
+     */
+    private final Map<String, ClearOldTask> clearTasks = new ConcurrentHashMap<>();
+
+    /**
+     * @param redisTemplate
+     * @param namespaces 使用版本号的命名空间(key前缀)
+     * @param refreshMillis 本地版本号刷新间隔
+     * @param channel 版本号变更通知通道
+     * @param clearOld INCR后是否在后台删除旧版本的key
+     */
+    public NamespaceVersionRegistry(RedisTemplate redisTemplate, List<String> namespaces, long refreshMillis,
+                                    String channel, boolean clearOld) {
+        this(redisTemplate, namespaces, refreshMillis, channel, clearOld, 60000L);
+    }
+
+    /**
+     * @param redisTemplate
+     * @param namespaces 使用版本号的命名空间(key前缀)
+     * @param refreshMillis 本地版本号刷新间隔
+     * @param channel 版本号变更通知通道
+     * @param clearOld INCR后是否在后台删除旧版本的key
+     * @param clearOldIntervalMillis 同一命名空间两次删除旧版本的最小间隔
+     */
+    public NamespaceVersionRegistry(RedisTemplate redisTemplate, List<String> namespaces, long refreshMillis,
+                                    String channel, boolean clearOld, long clearOldIntervalMillis) {
+        this.redisTemplate = redisTemplate;
+        this.namespaces = namespaces;
+        this.refreshMillis = refreshMillis;
+        this.channelName = channel;
+        this.channel = channel.getBytes(DEFAULT_CHARSET);
+        this.clearOld = clearOld;
+        this.clearOldIntervalMillis = clearOldIntervalMillis;
+    }
+
+    /**
+     * key所在的命名空间
+     * @param key 不带缓存名称的key
+     * @return 不在命名空间中时返回null
+     */
+    String namespaceOf(String key){
+        for(String namespace : namespaces){
+            if(key.startsWith(namespace)){
+                return namespace;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 加入版本号后的key
+     * @param cachePrefix 缓存名称前缀
+     * @param key 不带缓存名称的key
+     * @return 不在命名空间中时返回原key
+     */
+    String versioned(String cachePrefix, String key){
+        String namespace = namespaceOf(key);
+        if(null == namespace){
+            return key;
+        }
+        long version = current(cachePrefix + namespace);
+        return namespace + version + ':' + key.substring(namespace.length());
+    }
+
+    /**
+     * 增加命名空间版本号
+     * @param cachePrefix 缓存名称前缀
+     * @param namespace
+     * @param prefixCleaner 删除旧版本的key时使用
+     */
+    void increment(String cachePrefix, String namespace, RedisPrefixCleaner prefixCleaner){
+        String name = cachePrefix + namespace;
+        byte[] key = versionKey(name);
+        Long version = (Long) redisTemplate.execute((RedisCallback<Long>) connection -> connection.incr(key));
+        if(null == version){
+            return;
+        }
+        update(name, version);
+        publish(name, version);
+        if(clearOld){
+            clearOld(name, prefixCleaner);
+        }
+    }
+
+    /**
+     * 提交删除旧版本key的任务
+     * 已有未完成的任务或距上次提交不足clearOldIntervalMillis时不提交
+     * 任务执行时删除版本号小于当前版本号的所有key
+     * @param name 缓存名称前缀 + 命名空间
+     * @param prefixCleaner
+     */
+    private void clearOld(String name, RedisPrefixCleaner prefixCleaner){
+        long now = System.currentTimeMillis();
+        ClearOldTask last = clearTasks.get(name);
+        if(null != last && (now - last.submitMillis < clearOldIntervalMillis || !last.isDone())){
+            return;
+        }
+        ClearOldTask next = new ClearOldTask(now);
+        if(null == last ? null != clearTasks.putIfAbsent(name, next) : !clearTasks.replace(name, last, next)){
+            return;
+        }
+        try {
+            next.task = prefixCleaner.clearPrefixAsync(name, key -> isOldVersion(key, name));
+        }catch (RuntimeException e){
+            clearTasks.remove(name, next);
+            LOGGER.warn("submit clear old namespace version error, name : {}", name, e);
+        }
+    }
+
+    /**
+     * key的版本号是否小于当前版本号
+     * @param key 完整的key
+     * @param name 缓存名称前缀 + 命名空间
+     * @return 无法解析版本号时返回false
+     */
+    private boolean isOldVersion(byte[] key, String name){
+        String s = new String(key, DEFAULT_CHARSET);
+        int end = s.indexOf(':', name.length());
+        if(!s.startsWith(name) || end <= name.length()){
+            return false;
+        }
+        long version;
+        try {
+            version = Long.parseLong(s.substring(name.length(), end));
+        }catch (NumberFormatException e){
+            return false;
+        }
+        Version v = versions.get(name);
+        return null != v && version < v.value;
+    }
+
+    /**
+     * 当前版本号
+     * 超过refreshMillis时由一个线程读取redis，其他线程使用本地版本号
+     * @param name 缓存名称前缀 + 命名空间
+     * @return
+     */
+    private long current(String name){
+        Version v = versions.get(name);
+        long now = System.currentTimeMillis();
+        if(null == v){
+            v = versions.computeIfAbsent(name, n -> new Version(load(n), now));
+            return v.value;
+        }
+        long refreshTime = v.refreshTime.get();
+        if(now - refreshTime > refreshMillis && v.refreshTime.compareAndSet(refreshTime, now)){
+            try {
+                v.raise(load(name));
+            }catch (RuntimeException e){
+                LOGGER.warn("load namespace version error, name : {}", name, e);
+            }
+        }
+        return v.value;
+    }
+
+    private long load(String name){
+        byte[] key = versionKey(name);
+        byte[] value = (byte[]) redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(key));
+        return null == value ? 0L : Long.parseLong(new String(value, DEFAULT_CHARSET));
+    }
+
+    private void update(String name, long version){
+        versions.computeIfAbsent(name, n -> new Version(version, System.currentTimeMillis())).raise(version);
+    }
+
+    private void publish(String name, long version){
+        byte[] body = (name + SEPARATOR + version).getBytes(DEFAULT_CHARSET);
+        try {
+            redisTemplate.execute((RedisCallback<Object>) connection -> connection.publish(channel, body));
+        }catch (Exception e){
+            LOGGER.warn("publish namespace version error, name : {}", name, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), DEFAULT_CHARSET);
+        int i = body.lastIndexOf(SEPARATOR);
+        if(i <= 0){
+            return;
+        }
+        try {
+            update(body.substring(0, i), Long.parseLong(body.substring(i + 1)));
+        }catch (NumberFormatException e){
+            LOGGER.warn("invalid namespace version message : {}", body);
+        }
+    }
+
+    private byte[] versionKey(String name){
+        return redisTemplate.getKeySerializer().serialize(PREFIX_VERSION_KEY + name);
+    }
+
+    public String getChannel() {
+        return channelName;
+    }
+
+    /**
+     * 删除旧版本key的任务
+     */
+    private static final class ClearOldTask {
+        private final long submitMillis;
+        private volatile PrefixClearTask task;
+
+        private ClearOldTask(long submitMillis) {
+            this.submitMillis = submitMillis;
+        }
+
+        /**
+         * 提交中的任务视为未完成
+         * @return
+         */
+        private boolean isDone() {
+            PrefixClearTask t = task;
+            return null != t && t.isDone();
+        }
+    }
+
+    /**
+     * 本地保存的版本号
+     */
+    private static final class Version {
+        private volatile long value;
+        private final AtomicLong refreshTime;
+
+        private Version(long value, long refreshTime) {
+            this.value = value;
+            this.refreshTime = new AtomicLong(refreshTime);
+        }
+
+        /**
+         * 版本号只增加
+         * @param version
+         */
+        private synchronized void raise(long version) {
+            if(version > value){
+                value = version;
+            }
+        }
+    }
+}
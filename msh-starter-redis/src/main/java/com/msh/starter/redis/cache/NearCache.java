@@ -0,0 +1,234 @@
+package com.msh.starter.redis.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.msh.frame.interfaces.ICache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 两级缓存
+ * 本地缓存(Caffeine，W-TinyLFU淘汰，限制个数和过期时间)在前，redis缓存在后
+ * get先读本地缓存，未命中时读取redis并放入本地缓存，redis中不存在的值不放入本地缓存
+ * put,remove,clear等修改操作先修改redis，再删除本地缓存，并通过NearCacheInvalidator通知其他服务删除
+ * ---------------------------------------------------------------
+ * 注:
+ * 本地缓存直接返回缓存的对象，调用方不能修改返回的对象
+ * 通知丢失时(如订阅连接断开)，其他服务的本地缓存最多在过期时间后更新
+ * redis缓存为IBatchCache时，批量操作未命中本地缓存的部分一次访问redis
+ * @param <K>
+ * @param <V>
+ */
+public class NearCache<K,V> implements IBatchCache<K,V> {
+    private final String name;
+    private final ICache<K,V> redisCache;
+    private final NearCacheInvalidator invalidator;
+    private final Cache<String, V> localCache;
+    /**
+     * 本地缓存失效次数
+     * 读取redis前后不一致时，说明读取期间有失效通知，不放入本地缓存
+     */
+    private final AtomicLong invalidateVersion = new AtomicLong(0L);
+
+    /**
+     * @param name 缓存名称
+     * @param redisCache redis缓存
+     * @param invalidator 失效通知
+     * @param maximumSize 本地缓存最大个数
+     * @param expireSecond 本地缓存过期时间(写入后)
+     */
+    public NearCache(String name, ICache<K,V> redisCache, NearCacheInvalidator invalidator, long maximumSize, long expireSecond) {
+        this.name = name;
+        this.redisCache = redisCache;
+        this.invalidator = invalidator;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireSecond, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public V get(K k) {
+        String key = String.valueOf(k);
+        V v = localCache.getIfPresent(key);
+        if(null != v){
+            return v;
+        }
+        long version = invalidateVersion.get();
+        v = redisCache.get(k);
+        if(null != v && version == invalidateVersion.get()){
+            localCache.put(key, v);
+            //放入期间有失效通知时删除，防止放入旧值
+            if(version != invalidateVersion.get()){
+                localCache.invalidate(key);
+            }
+        }
+        return v;
+    }
+
+    @Override
+    public void put(K k, V o) {
+        redisCache.put(k, o);
+        invalidateAndPublish(Collections.singletonList(String.valueOf(k)));
+    }
+
+    @Override
+    public void put(K k, V o, long expireSecond) {
+        redisCache.put(k, o, expireSecond);
+        invalidateAndPublish(Collections.singletonList(String.valueOf(k)));
+    }
+
+    @Override
+    public boolean hasKey(K k) {
+        if(null != localCache.getIfPresent(String.valueOf(k))){
+            return true;
+        }
+        return redisCache.hasKey(k);
+    }
+
+    @Override
+    public void remove(K k) {
+        redisCache.remove(k);
+        invalidateAndPublish(Collections.singletonList(String.valueOf(k)));
+    }
+
+    @Override
+    public void remove(Collection c) {
+        redisCache.remove(c);
+        invalidateAndPublish(toStringKeys(c));
+    }
+
+    @Override
+    public void clearPrefix(K k) {
+        redisCache.clearPrefix(k);
+        String prefix = String.valueOf(k);
+        invalidateLocalPrefix(prefix);
+        invalidator.publishClearPrefix(name, prefix);
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        invalidateLocalAll();
+        invalidator.publishClear(name);
+    }
+
+    @Override
+    public Map<K,V> getAll(Collection<K> keys) {
+        Map<K,V> result = new HashMap<>();
+        List<K> missKeys = new ArrayList<>();
+        for(K k : keys){
+            V v = localCache.getIfPresent(String.valueOf(k));
+            if(null != v){
+                result.put(k, v);
+            }else {
+                missKeys.add(k);
+            }
+        }
+        if(missKeys.isEmpty()){
+            return result;
+        }
+        long version = invalidateVersion.get();
+        Map<K,V> loaded;
+        if(redisCache instanceof IBatchCache){
+            loaded = ((IBatchCache<K,V>) redisCache).getAll(missKeys);
+        }else {
+            loaded = new HashMap<>();
+            for(K k : missKeys){
+                V v = redisCache.get(k);
+                if(null != v){
+                    loaded.put(k, v);
+                }
+            }
+        }
+        if(version == invalidateVersion.get()){
+            for(Map.Entry<K,V> entry : loaded.entrySet()){
+                localCache.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            if(version != invalidateVersion.get()){
+                for(K k : loaded.keySet()){
+                    localCache.invalidate(String.valueOf(k));
+                }
+            }
+        }
+        result.putAll(loaded);
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<K,V> map) {
+        putAll(map, 0L);
+    }
+
+    @Override
+    public void putAll(Map<K,V> map, long expireSecond) {
+        if(redisCache instanceof IBatchCache){
+            ((IBatchCache<K,V>) redisCache).putAll(map, expireSecond);
+        }else {
+            for(Map.Entry<K,V> entry : map.entrySet()){
+                if(expireSecond > 0){
+                    redisCache.put(entry.getKey(), entry.getValue(), expireSecond);
+                }else {
+                    redisCache.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        invalidateAndPublish(toStringKeys(map.keySet()));
+    }
+
+    @Override
+    public void removeAll(Collection<K> keys) {
+        if(redisCache instanceof IBatchCache){
+            ((IBatchCache<K,V>) redisCache).removeAll(keys);
+        }else {
+            redisCache.remove(keys);
+        }
+        invalidateAndPublish(toStringKeys(keys));
+    }
+
+    private static List<String> toStringKeys(Collection<?> keys){
+        List<String> list = new ArrayList<>(keys.size());
+        for(Object k : keys){
+            list.add(String.valueOf(k));
+        }
+        return list;
+    }
+
+    /**
+     * 删除本地缓存
+     * @param keys
+     */
+    void invalidateLocal(Collection<String> keys){
+        invalidateVersion.incrementAndGet();
+        localCache.invalidateAll(keys);
+    }
+
+    /**
+     * 删除本地缓存中以prefix开头的key
+     * @param prefix
+     */
+    void invalidateLocalPrefix(String prefix){
+        invalidateVersion.incrementAndGet();
+        localCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 清空本地缓存
+     */
+    void invalidateLocalAll(){
+        invalidateVersion.incrementAndGet();
+        localCache.invalidateAll();
+    }
+
+    private void invalidateAndPublish(Collection<String> keys){
+        invalidateLocal(keys);
+        invalidator.publishRemove(name, keys);
+    }
+}
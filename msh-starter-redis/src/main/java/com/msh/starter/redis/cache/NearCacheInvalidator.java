@@ -0,0 +1,137 @@
+package com.msh.starter.redis.cache;
+
+import com.msh.frame.interfaces.ICache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 两级缓存的失效通知
+ * 通过redis发布订阅，把remove,clearPrefix,clear广播到所有服务，收到后删除本地缓存
+ * 消息格式: 服务标识 \n 缓存名称 \n 类型 \n key(多个key以\n分隔)
+ * 类型 R:删除key P:删除前缀 C:清空
+ * 自己发出的消息不处理(发送前已删除本地缓存)
+ */
+public class NearCacheInvalidator implements MessageListener {
+    private static Logger LOGGER = LoggerFactory.getLogger(NearCacheInvalidator.class);
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+    private static final char SEPARATOR = '\n';
+    private static final String TYPE_REMOVE = "R";
+    private static final String TYPE_CLEAR_PREFIX = "P";
+    private static final String TYPE_CLEAR = "C";
+
+    private final RedisTemplate redisTemplate;
+    private final String channelName;
+    private final byte[] channel;
+    /**
+     * 使用两级缓存的缓存名称，为空时全部使用
+     */
+    private final Set<String> cacheNames;
+    private final long maximumSize;
+    private final long expireSecond;
+    /**
+     * 当前服务的唯一标识
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, NearCache> nearCacheMap = new ConcurrentHashMap<>();
+
+    /**
+     * @param redisTemplate
+     * @param channel 发布订阅的通道
+     * @param cacheNames 使用两级缓存的缓存名称，为空时全部使用
+     * @param maximumSize 每个本地缓存最大个数
+     * @param expireSecond 本地缓存过期时间
+     */
+    public NearCacheInvalidator(RedisTemplate redisTemplate, String channel, Set<String> cacheNames, long maximumSize, long expireSecond) {
+        this.redisTemplate = redisTemplate;
+        this.channelName = channel;
+        this.channel = channel.getBytes(DEFAULT_CHARSET);
+        this.cacheNames = cacheNames;
+        this.maximumSize = maximumSize;
+        this.expireSecond = expireSecond;
+    }
+
+    /**
+     * 需要使用两级缓存时包装redis缓存
+     * @param name 缓存名称
+     * @param redisCache
+     * @return
+     */
+    public <K,V> ICache<K,V> wrap(String name, ICache<K,V> redisCache){
+        if(!cacheNames.isEmpty() && !cacheNames.contains(name)){
+            return redisCache;
+        }
+        NearCache<K,V> nearCache = new NearCache<>(name, redisCache, this, maximumSize, expireSecond);
+        nearCacheMap.put(name, nearCache);
+        return nearCache;
+    }
+
+    void publishRemove(String name, Collection<String> keys){
+        StringBuilder sb = header(name, TYPE_REMOVE);
+        for(String key : keys){
+            sb.append(SEPARATOR).append(key);
+        }
+        publish(sb);
+    }
+
+    void publishClearPrefix(String name, String prefix){
+        publish(header(name, TYPE_CLEAR_PREFIX).append(SEPARATOR).append(prefix));
+    }
+
+    void publishClear(String name){
+        publish(header(name, TYPE_CLEAR));
+    }
+
+    private StringBuilder header(String name, String type){
+        return new StringBuilder(nodeId).append(SEPARATOR).append(name).append(SEPARATOR).append(type);
+    }
+
+    private void publish(StringBuilder sb){
+        byte[] body = sb.toString().getBytes(DEFAULT_CHARSET);
+        try {
+            redisTemplate.execute((RedisCallback<Object>) connection -> connection.publish(channel, body));
+        }catch (Exception e){
+            LOGGER.warn("publish near cache invalidate message error", e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), DEFAULT_CHARSET).split(String.valueOf(SEPARATOR), -1);
+        if(parts.length < 3 || nodeId.equals(parts[0])){
+            return;
+        }
+        NearCache nearCache = nearCacheMap.get(parts[1]);
+        if(null == nearCache){
+            return;
+        }
+        switch (parts[2]){
+            case TYPE_REMOVE:
+                nearCache.invalidateLocal(Arrays.asList(parts).subList(3, parts.length));
+                break;
+            case TYPE_CLEAR_PREFIX:
+                nearCache.invalidateLocalPrefix(parts.length > 3 ? parts[3] : "");
+                break;
+            case TYPE_CLEAR:
+                nearCache.invalidateLocalAll();
+                break;
+            default:
+                LOGGER.warn("unknown near cache invalidate message type : {}", parts[2]);
+        }
+    }
+
+    public String getChannel() {
+        return channelName;
+    }
+}
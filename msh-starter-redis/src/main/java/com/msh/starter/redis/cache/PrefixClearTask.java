@@ -0,0 +1,90 @@
+package com.msh.starter.redis.cache;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 按前缀删除key的任务进度
+ */
+public class PrefixClearTask {
+    private final String prefix;
+    private final AtomicLong scanned = new AtomicLong(0L);
+    private final AtomicLong deleted = new AtomicLong(0L);
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile Throwable error;
+    /**
+     * 只删除满足条件的key，为null时全部删除
+     */
+    private final Predicate<byte[]> filter;
+
+    PrefixClearTask(String prefix) {
+        this(prefix, null);
+    }
+
+    PrefixClearTask(String prefix, Predicate<byte[]> filter) {
+        this.prefix = prefix;
+        this.filter = filter;
+    }
+
+    boolean accept(byte[] key) {
+        return null == filter || filter.test(key);
+    }
+
+    void addScanned(long n) {
+        scanned.addAndGet(n);
+    }
+
+    void addDeleted(long n) {
+        deleted.addAndGet(n);
+    }
+
+    void complete(Throwable error) {
+        this.error = error;
+        done.countDown();
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * 已遍历的key数
+     * @return
+     */
+    public long getScanned() {
+        return scanned.get();
+    }
+
+    /**
+     * 已删除的key数
+     * @return
+     */
+    public long getDeleted() {
+        return deleted.get();
+    }
+
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * 失败时的异常，未失败时为null
+     * @return
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * 等待任务完成
+     * @param timeout
+     * @param unit
+     * @return 是否已完成
+     * @throws InterruptedException
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+}
@@ -1,48 +1,101 @@
 package com.msh.starter.redis.cache;
 
 import com.msh.frame.common.util.StringUtil;
-import com.msh.frame.interfaces.ICache;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 
-public class RedisCache<K,V> implements ICache<K,V> {
+/**
+ * redis缓存
+ * clearPrefix和clear通过RedisPrefixCleaner使用SCAN + UNLINK分批删除，不使用KEYS
+ * 设置NamespaceVersionRegistry时，命名空间中的key加入版本号，
+ * clearPrefix(命名空间)只增加版本号，不删除key
+ * ---------------------------------------------------------------
+ * 批量操作:
+ * getAll使用MGET，putAll使用pipeline批量SET(EX)，removeAll使用UNLINK
+ * key前缀和序列化每批只处理一次
+ * redis集群时按slot分组，每组一次MGET/UNLINK，putAll每组执行一次lua脚本
+ * @param <K>
+ * @param <V>
+ */
+public class RedisCache<K,V> implements IBatchCache<K,V> {
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+    /**
+     * 集群模式下同一slot的key批量SET
+     * ARGV[1]为过期秒数，0为不过期，之后依次为每个key的值
+     */
+    private static final byte[] PUT_ALL_SCRIPT = ("local ttl = tonumber(ARGV[1]) " +
+            "for i = 1, #KEYS do " +
+            "if ttl > 0 then redis.call('set', KEYS[i], ARGV[i + 1], 'EX', ttl) " +
+            "else redis.call('set', KEYS[i], ARGV[i + 1]) end " +
+            "end return #KEYS").getBytes(DEFAULT_CHARSET);
+
     private final RedisTemplate redisTemplate;
     private final String keyPrefix;
+    private final RedisPrefixCleaner prefixCleaner;
+    /**
+     * 命名空间版本号，为null时不使用
+     */
+    private final NamespaceVersionRegistry namespaceVersionRegistry;
 
     public RedisCache(RedisTemplate redisTemplate, String keyPrefix) {
+        this(redisTemplate, keyPrefix, new RedisPrefixCleaner(redisTemplate, 1000, 500, false));
+    }
+
+    public RedisCache(RedisTemplate redisTemplate, String keyPrefix, RedisPrefixCleaner prefixCleaner) {
+        this(redisTemplate, keyPrefix, prefixCleaner, null);
+    }
+
+    public RedisCache(RedisTemplate redisTemplate, String keyPrefix, RedisPrefixCleaner prefixCleaner,
+                      NamespaceVersionRegistry namespaceVersionRegistry) {
         this.redisTemplate = redisTemplate;
         this.keyPrefix = keyPrefix + StringUtil.COLON;
+        this.prefixCleaner = prefixCleaner;
+        this.namespaceVersionRegistry = namespaceVersionRegistry;
     }
 
     @Override
     public V get(K k) {
-        return (V)redisTemplate.opsForValue().get(keyPrefix+k);
+        return (V)redisTemplate.opsForValue().get(key(k));
     }
 
     @Override
     public void put(K k, V o) {
-        redisTemplate.opsForValue().set(keyPrefix+k,o);
+        redisTemplate.opsForValue().set(key(k),o);
     }
 
     @Override
     public void put(K k, V o, long expireSecond) {
-        redisTemplate.opsForValue().set(keyPrefix+k,o,expireSecond,TimeUnit.SECONDS);
+        redisTemplate.opsForValue().set(key(k),o,expireSecond,TimeUnit.SECONDS);
     }
 
     @Override
     public boolean hasKey(K k) {
-        return redisTemplate.hasKey(keyPrefix+k);
+        return redisTemplate.hasKey(key(k));
     }
 
     @Override
     public void remove(K k) {
-        redisTemplate.delete(keyPrefix+k);
+        redisTemplate.delete(key(k));
     }
 
 
@@ -51,22 +104,191 @@ public class RedisCache<K,V> implements ICache<K,V> {
         Set<String> set=new HashSet<>();
         Iterator it=c.iterator();
         while(it.hasNext()){
-            set.add(keyPrefix+ String.valueOf(it.next()));
+            set.add(key(it.next()));
         }
         redisTemplate.delete(set);
     }
 
     @Override
     public void clearPrefix(K k) {
-        redisTemplate.delete(redisTemplate.keys(keyPrefix+k+"*"));
+        String prefix = String.valueOf(k);
+        if(null != namespaceVersionRegistry && prefix.equals(namespaceVersionRegistry.namespaceOf(prefix))){
+            namespaceVersionRegistry.increment(keyPrefix, prefix, prefixCleaner);
+            return;
+        }
+        prefixCleaner.clearPrefix(key(prefix));
     }
 
     @Override
     public void clear(){
-        Set set=redisTemplate.keys(keyPrefix+StringUtil.ASTERISK);
-        if(null!=set) {
-            redisTemplate.delete(set);
+        prefixCleaner.clearPrefix(keyPrefix);
+    }
+
+    /**
+     * 在后台线程删除以k开头的key
+     * @param k
+     * @return 可查看进度的任务
+     */
+    public PrefixClearTask clearPrefixAsync(K k) {
+        return prefixCleaner.clearPrefixAsync(key(k));
+    }
+
+    @Override
+    public Map<K,V> getAll(Collection<K> keys) {
+        Map<K,V> result = new HashMap<>();
+        if(null == keys || keys.isEmpty()){
+            return result;
+        }
+        List<K> list = new ArrayList<>(keys);
+        byte[][] rawKeys = rawKeys(list);
+        RedisSerializer valueSerializer = redisTemplate.getValueSerializer();
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            for(int[] group : groupBySlot(connection, rawKeys)){
+                List<byte[]> values = connection.mGet(select(rawKeys, group));
+                if(null == values){
+                    continue;
+                }
+                for(int j = 0; j < group.length; j++){
+                    byte[] value = values.get(j);
+                    Object v = null == value ? null : valueSerializer.deserialize(value);
+                    if(null != v){
+                        result.put(list.get(group[j]), (V) v);
+                    }
+                }
+            }
+            return null;
+        });
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<K,V> map) {
+        putAll(map, 0L);
+    }
+
+    @Override
+    public void putAll(Map<K,V> map, long expireSecond) {
+        if(null == map || map.isEmpty()){
+            return;
+        }
+        List<K> list = new ArrayList<>(map.keySet());
+        byte[][] rawKeys = rawKeys(list);
+        RedisSerializer valueSerializer = redisTemplate.getValueSerializer();
+        byte[][] rawValues = new byte[list.size()][];
+        for(int i = 0; i < rawValues.length; i++){
+            rawValues[i] = valueSerializer.serialize(map.get(list.get(i)));
+        }
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            if(connection instanceof RedisClusterConnection){
+                byte[] ttl = String.valueOf(Math.max(expireSecond, 0L)).getBytes(DEFAULT_CHARSET);
+                for(int[] group : groupBySlot(connection, rawKeys)){
+                    byte[][] keysAndArgs = new byte[group.length * 2 + 1][];
+                    keysAndArgs[group.length] = ttl;
+                    for(int j = 0; j < group.length; j++){
+                        keysAndArgs[j] = rawKeys[group[j]];
+                        keysAndArgs[group.length + 1 + j] = rawValues[group[j]];
+                    }
+                    connection.eval(PUT_ALL_SCRIPT, ReturnType.INTEGER, group.length, keysAndArgs);
+                }
+                return null;
+            }
+            connection.openPipeline();
+            try {
+                for(int i = 0; i < rawKeys.length; i++){
+                    if(expireSecond > 0){
+                        connection.set(rawKeys[i], rawValues[i], Expiration.seconds(expireSecond),
+                                RedisStringCommands.SetOption.upsert());
+                    }else {
+                        connection.set(rawKeys[i], rawValues[i]);
+                    }
+                }
+            }finally {
+                connection.closePipeline();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void removeAll(Collection<K> keys) {
+        if(null == keys || keys.isEmpty()){
+            return;
+        }
+        byte[][] rawKeys = rawKeys(new ArrayList<>(keys));
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            for(int[] group : groupBySlot(connection, rawKeys)){
+                connection.unlink(select(rawKeys, group));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 序列化后的完整key
+     * @param keys
+     * @return
+     */
+    private byte[][] rawKeys(List<?> keys){
+        RedisSerializer keySerializer = redisTemplate.getKeySerializer();
+        byte[][] rawKeys = new byte[keys.size()][];
+        for(int i = 0; i < rawKeys.length; i++){
+            rawKeys[i] = keySerializer.serialize(key(keys.get(i)));
+        }
+        return rawKeys;
+    }
+
+    /**
+     * 集群模式下按slot分组，非集群模式为一组
+     * @param connection
+     * @param rawKeys
+     * @return 每组key在rawKeys中的下标
+     */
+    private static List<int[]> groupBySlot(RedisConnection connection, byte[][] rawKeys){
+        List<int[]> groups = new ArrayList<>();
+        if(!(connection instanceof RedisClusterConnection)){
+            int[] all = new int[rawKeys.length];
+            for(int i = 0; i < all.length; i++){
+                all[i] = i;
+            }
+            groups.add(all);
+            return groups;
+        }
+        Map<Integer, List<Integer>> slots = new LinkedHashMap<>();
+        for(int i = 0; i < rawKeys.length; i++){
+            slots.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(rawKeys[i]), slot -> new ArrayList<>()).add(i);
+        }
+        for(List<Integer> indexes : slots.values()){
+            int[] group = new int[indexes.size()];
+            for(int i = 0; i < group.length; i++){
+                group[i] = indexes.get(i);
+            }
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    private static byte[][] select(byte[][] rawKeys, int[] group){
+        if(group.length == rawKeys.length){
+            return rawKeys;
+        }
+        byte[][] selected = new byte[group.length][];
+        for(int i = 0; i < group.length; i++){
+            selected[i] = rawKeys[group[i]];
+        }
+        return selected;
+    }
+
+    /**
+     * 完整的key，在命名空间中时加入版本号
+     * @param k
+     * @return
+     */
+    private String key(Object k){
+        String key = String.valueOf(k);
+        if(null != namespaceVersionRegistry){
+            key = namespaceVersionRegistry.versioned(keyPrefix, key);
         }
+        return keyPrefix + key;
     }
 
 }
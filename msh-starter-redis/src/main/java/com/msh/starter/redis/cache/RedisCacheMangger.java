@@ -15,6 +15,18 @@ public class RedisCacheMangger implements ICacheManager {
     private Map<String,ICache> redisCacheMap=new ConcurrentHashMap<>();
     @Autowired
     private RedisTemplate redisTemplate;
+    @Autowired
+    private RedisPrefixCleaner redisPrefixCleaner;
+    /**
+     * 开启命名空间版本号时存在
+     */
+    @Autowired(required = false)
+    private NamespaceVersionRegistry namespaceVersionRegistry;
+    /**
+     * 开启两级缓存时存在
+     */
+    @Autowired(required = false)
+    private NearCacheInvalidator nearCacheInvalidator;
 
 
     @Override
@@ -27,7 +39,10 @@ public class RedisCacheMangger implements ICacheManager {
             if(redisCacheMap.containsKey(name)){
                 return redisCacheMap.get(name);
             }
-            ICache cache=new RedisCache(redisTemplate,name);
+            ICache cache=new RedisCache(redisTemplate,name,redisPrefixCleaner,namespaceVersionRegistry);
+            if(null!=nearCacheInvalidator){
+                cache=nearCacheInvalidator.wrap(name,cache);
+            }
             redisCacheMap.put(name,cache);
             return cache;
         }
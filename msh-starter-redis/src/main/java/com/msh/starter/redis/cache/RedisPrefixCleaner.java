@@ -0,0 +1,326 @@
+package com.msh.starter.redis.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * 按前缀删除redis中的key
+ * 使用SCAN分批遍历，每batchSize个key调用一次UNLINK(redis4.0以下使用DEL)，不使用阻塞的KEYS
+ * 同步模式在调用线程中执行完成后返回，异步模式提交到后台线程后立即返回
+ * 返回的PrefixClearTask可以查看进度，累计数据通过getter获取
+ * ---------------------------------------------------------------
+ * 注:
+ * 遍历期间新写入的key可能不会被删除
+ * redis集群时依次SCAN每个master节点，每批key按slot分组后UNLINK
+ */
+public class RedisPrefixCleaner implements DisposableBean {
+    private static Logger LOGGER = LoggerFactory.getLogger(RedisPrefixCleaner.class);
+
+    private final RedisTemplate redisTemplate;
+    /**
+     * 每次SCAN的COUNT
+     */
+    private final long scanCount;
+    /**
+     * 每次UNLINK的key数
+     */
+    private final int batchSize;
+    /**
+     * 是否异步删除
+     */
+    private final boolean async;
+    private volatile ExecutorService executor;
+    /**
+     * redis不支持UNLINK时使用DEL
+     */
+    private volatile boolean unlinkSupported = true;
+
+    private final LongAdder taskCount = new LongAdder();
+    private final LongAdder scannedCount = new LongAdder();
+    private final LongAdder deletedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder costNanos = new LongAdder();
+    private final LongAdder failCount = new LongAdder();
+
+    /**
+     * @param redisTemplate
+     * @param scanCount 每次SCAN的COUNT
+     * @param batchSize 每次UNLINK的key数
+     * @param async 是否异步删除
+     */
+    public RedisPrefixCleaner(RedisTemplate redisTemplate, long scanCount, int batchSize, boolean async) {
+        this.redisTemplate = redisTemplate;
+        this.scanCount = scanCount;
+        this.batchSize = batchSize;
+        this.async = async;
+    }
+
+    /**
+     * 删除以prefix开头的key，按配置同步或异步执行
+     * @param prefix
+     * @return
+     */
+    public PrefixClearTask clearPrefix(String prefix) {
+        return async ? clearPrefixAsync(prefix) : clearPrefixSync(prefix);
+    }
+
+    /**
+     * 在当前线程删除以prefix开头的key
+     * @param prefix
+     * @return 已完成的任务
+     */
+    public PrefixClearTask clearPrefixSync(String prefix) {
+        PrefixClearTask task = new PrefixClearTask(prefix);
+        run(task);
+        return task;
+    }
+
+    /**
+     * 在后台线程删除以prefix开头的key
+     * @param prefix
+     * @return 未完成的任务
+     */
+    public PrefixClearTask clearPrefixAsync(String prefix) {
+        return clearPrefixAsync(prefix, null);
+    }
+
+    /**
+     * 在后台线程删除以prefix开头且满足filter的key
+     * @param prefix
+     * @param filter 为null时全部删除
+     * @return 未完成的任务
+     */
+    PrefixClearTask clearPrefixAsync(String prefix, Predicate<byte[]> filter) {
+        PrefixClearTask task = new PrefixClearTask(prefix, filter);
+        getExecutor().execute(() -> run(task));
+        return task;
+    }
+
+    private void run(PrefixClearTask task){
+        long begin = System.nanoTime();
+        taskCount.increment();
+        try {
+            String pattern = escape(task.getPrefix()) + "*";
+            redisTemplate.execute((RedisCallback<Object>) connection -> {
+                scanAndDelete(connection, pattern, task);
+                return null;
+            });
+            task.complete(null);
+        }catch (RuntimeException e){
+            failCount.increment();
+            LOGGER.warn("clear redis prefix error, prefix : {}", task.getPrefix(), e);
+            task.complete(e);
+            if(!async){
+                throw e;
+            }
+        }finally {
+            costNanos.add(System.nanoTime() - begin);
+        }
+    }
+
+    private void scanAndDelete(RedisConnection connection, String pattern, PrefixClearTask task){
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(scanCount).build();
+        if(connection instanceof RedisClusterConnection){
+            RedisClusterConnection clusterConnection = (RedisClusterConnection) connection;
+            for(RedisClusterNode node : clusterConnection.clusterGetNodes()){
+                if(node.isMaster()){
+                    scanAndDelete(connection, clusterConnection.scan(node, options), task);
+                }
+            }
+            return;
+        }
+        scanAndDelete(connection, connection.scan(options), task);
+    }
+
+    private void scanAndDelete(RedisConnection connection, Cursor<byte[]> scanCursor, PrefixClearTask task){
+        byte[][] batch = new byte[batchSize][];
+        int size = 0;
+        try (Cursor<byte[]> cursor = scanCursor) {
+            while(cursor.hasNext()){
+                byte[] key = cursor.next();
+                task.addScanned(1);
+                scannedCount.increment();
+                if(!task.accept(key)){
+                    continue;
+                }
+                batch[size++] = key;
+                if(size == batchSize){
+                    delete(connection, batch, size, task);
+                    size = 0;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("close redis scan cursor error", e);
+        }
+        if(size > 0){
+            delete(connection, batch, size, task);
+        }
+    }
+
+    private void delete(RedisConnection connection, byte[][] batch, int size, PrefixClearTask task){
+        byte[][] keys = size == batch.length ? batch : Arrays.copyOf(batch, size);
+        if(!(connection instanceof RedisClusterConnection)){
+            unlink(connection, keys, task);
+            return;
+        }
+        Map<Integer, List<byte[]>> slots = new LinkedHashMap<>();
+        for(byte[] key : keys){
+            slots.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(key), slot -> new ArrayList<>()).add(key);
+        }
+        for(List<byte[]> slotKeys : slots.values()){
+            unlink(connection, slotKeys.toArray(new byte[0][]), task);
+        }
+    }
+
+    private void unlink(RedisConnection connection, byte[][] keys, PrefixClearTask task){
+        Long deleted = null;
+        boolean unlinked = false;
+        if(unlinkSupported){
+            try {
+                deleted = connection.unlink(keys);
+                unlinked = true;
+            }catch (RuntimeException e){
+                if(!isUnknownCommand(e)){
+                    throw e;
+                }
+                LOGGER.warn("redis unlink not supported, use del", e);
+                unlinkSupported = false;
+            }
+        }
+        if(!unlinked){
+            deleted = connection.del(keys);
+        }
+        long n = null == deleted ? 0L : deleted;
+        task.addDeleted(n);
+        deletedCount.add(n);
+        batchCount.increment();
+    }
+
+    /**
+     * 是否为redis不支持命令的错误(redis4.0以下没有UNLINK)
+     * @param e
+     * @return
+     */
+    private static boolean isUnknownCommand(Throwable e){
+        for(Throwable t = e; null != t; t = t.getCause()){
+            String message = t.getMessage();
+            if(null != message && message.toLowerCase().contains("unknown command")){
+                return true;
+            }
+            if(t.getCause() == t){
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 转义glob特殊字符
+     * @param prefix
+     * @return
+     */
+    private static String escape(String prefix){
+        StringBuilder sb = new StringBuilder(prefix.length() + 8);
+        for(int i = 0; i < prefix.length(); i++){
+            char c = prefix.charAt(i);
+            if(c == '*' || c == '?' || c == '[' || c == ']' || c == '\\'){
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private ExecutorService getExecutor(){
+        if(null == executor){
+            synchronized (this){
+                if(null == executor){
+                    executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                            new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(r, "redis-prefix-cleaner");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+
+    @Override
+    public void destroy() {
+        if(null != executor){
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 执行过的删除任务数
+     * @return
+     */
+    public long getTaskCount() {
+        return taskCount.sum();
+    }
+
+    /**
+     * 累计遍历的key数
+     * @return
+     */
+    public long getScannedCount() {
+        return scannedCount.sum();
+    }
+
+    /**
+     * 累计删除的key数
+     * @return
+     */
+    public long getDeletedCount() {
+        return deletedCount.sum();
+    }
+
+    /**
+     * 累计UNLINK/DEL次数
+     * @return
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * 累计耗时 纳秒
+     * @return
+     */
+    public long getCostNanos() {
+        return costNanos.sum();
+    }
+
+    /**
+     * 失败的任务数
+     * @return
+     */
+    public long getFailCount() {
+        return failCount.sum();
+    }
+}
@@ -0,0 +1,129 @@
+package com.msh.starter.redis.common;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * BinaryRedisSerializer的类注册表
+ * 序列化时写入注册的类id，不写入类名
+ * 类id注册后不能修改，不同服务需要使用相同的注册
+ * ---------------------------------------------------------------
+ * 字段按字段名的hashCode作为标签写入，
+ * 读取时跳过不认识的标签，缺少的字段保持默认值，增加或删除字段时新旧数据可以互相读取
+ * 字段类型修改时只支持数字类型之间转换
+ */
+public class BinaryClassRegistry {
+    private final Map<Integer, ClassMeta> idMap = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ClassMeta> classMap = new ConcurrentHashMap<>();
+
+    /**
+     * 注册类
+     * 普通类需要有无参构造方法
+     * @param id 类id，大于0
+     * @param clazz
+     */
+    public synchronized void register(int id, Class<?> clazz) {
+        if(id <= 0){
+            throw new IllegalArgumentException("class id must be positive");
+        }
+        ClassMeta exist = idMap.get(id);
+        if(null != exist){
+            if(exist.clazz == clazz){
+                return;
+            }
+            throw new IllegalStateException("class id " + id + " is registered by " + exist.clazz.getName());
+        }
+        if(classMap.containsKey(clazz)){
+            throw new IllegalStateException(clazz.getName() + " is registered by id " + classMap.get(clazz).id);
+        }
+        ClassMeta meta = new ClassMeta(id, clazz);
+        idMap.put(id, meta);
+        classMap.put(clazz, meta);
+    }
+
+    ClassMeta get(Class<?> clazz) {
+        return classMap.get(clazz);
+    }
+
+    ClassMeta get(int id) {
+        return idMap.get(id);
+    }
+
+    /**
+     * 注册类的元数据
+     */
+    static final class ClassMeta {
+        final int id;
+        final Class<?> clazz;
+        final boolean isEnum;
+        final Object[] enumConstants;
+        final Constructor<?> constructor;
+        final FieldMeta[] fields;
+        final Map<Integer, FieldMeta> fieldMap;
+
+        private ClassMeta(int id, Class<?> clazz) {
+            this.id = id;
+            this.clazz = clazz;
+            this.isEnum = clazz.isEnum();
+            if(isEnum){
+                this.enumConstants = clazz.getEnumConstants();
+                this.constructor = null;
+                this.fields = new FieldMeta[0];
+                this.fieldMap = new HashMap<>();
+                return;
+            }
+            this.enumConstants = null;
+            try {
+                this.constructor = clazz.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(clazz.getName() + " has no default constructor", e);
+            }
+            List<FieldMeta> list = new ArrayList<>();
+            Map<Integer, FieldMeta> map = new HashMap<>();
+            for(Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()){
+                for(Field field : c.getDeclaredFields()){
+                    int modifiers = field.getModifiers();
+                    if(Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)){
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    FieldMeta fieldMeta = new FieldMeta(field);
+                    FieldMeta conflict = map.put(fieldMeta.tag, fieldMeta);
+                    if(null != conflict){
+                        throw new IllegalStateException(clazz.getName() + " field tag conflict: "
+                                + conflict.field.getName() + ", " + field.getName());
+                    }
+                    list.add(fieldMeta);
+                }
+            }
+            this.fields = list.toArray(new FieldMeta[0]);
+            this.fieldMap = map;
+        }
+
+        Object newInstance() throws ReflectiveOperationException {
+            return constructor.newInstance();
+        }
+    }
+
+    /**
+     * 字段元数据
+     */
+    static final class FieldMeta {
+        final Field field;
+        final int tag;
+        final Class<?> type;
+
+        private FieldMeta(Field field) {
+            this.field = field;
+            this.tag = field.getName().hashCode();
+            this.type = field.getType();
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package com.msh.starter.redis.common;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.alibaba.fastjson.util.TypeUtils;
+import com.msh.starter.redis.common.BinaryClassRegistry.ClassMeta;
+import com.msh.starter.redis.common.BinaryClassRegistry.FieldMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 二进制redis序列化
+ * 注册到BinaryClassRegistry的类使用二进制格式: 类id代替类名，字段名hashCode作为标签，数字使用变长编码
+ * 未注册的类与FastJson2JsonRedisSerializer相同，写入带类名的json
+ * 注册类中未注册类型的字段单独写入带类名的json
+ * ---------------------------------------------------------------
+ * 二进制格式: MAGIC(1字节) + 格式版本(1字节) + 值
+ * 值: 类型(1字节) + 内容，对象为 类id + 字段数 + (标签 + 值)...
+ * json不会以MAGIC开头，读取时根据第一个字节区分，可以直接读取原来FastJson2JsonRedisSerializer写入的数据
+ * 反之FastJson2JsonRedisSerializer不能读取本类写入的二进制数据，回滚到json前需要清理注册类的缓存
+ * ---------------------------------------------------------------
+ * 每个线程使用一个输出缓冲区，超过MAX_RETAINED_BUFFER_SIZE时用完后释放
+ * 二进制数据读取失败(如其他服务注册了本服务没有的类)时记录日志并返回null，按缓存未命中处理
+ * @param <T>
+ */
+public class BinaryRedisSerializer<T> implements RedisSerializer<T> {
+    private static Logger LOGGER = LoggerFactory.getLogger(BinaryRedisSerializer.class);
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+    private static final byte MAGIC = (byte) 0xB1;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_TRUE = 1;
+    private static final byte TYPE_FALSE = 2;
+    private static final byte TYPE_INT = 3;
+    private static final byte TYPE_LONG = 4;
+    private static final byte TYPE_SHORT = 5;
+    private static final byte TYPE_BYTE = 6;
+    private static final byte TYPE_CHAR = 7;
+    private static final byte TYPE_FLOAT = 8;
+    private static final byte TYPE_DOUBLE = 9;
+    private static final byte TYPE_STRING = 10;
+    private static final byte TYPE_BYTES = 11;
+    private static final byte TYPE_BIG_DECIMAL = 12;
+    private static final byte TYPE_BIG_INTEGER = 13;
+    private static final byte TYPE_DATE = 14;
+    private static final byte TYPE_LIST = 15;
+    private static final byte TYPE_SET = 16;
+    private static final byte TYPE_MAP = 17;
+    private static final byte TYPE_ENUM = 18;
+    private static final byte TYPE_OBJECT = 19;
+    private static final byte TYPE_JSON = 20;
+
+    private static final Map<Class<?>, Class<?>> PRIMITIVE_WRAPPERS = new HashMap<>();
+
+    static {
+        PRIMITIVE_WRAPPERS.put(int.class, Integer.class);
+        PRIMITIVE_WRAPPERS.put(long.class, Long.class);
+        PRIMITIVE_WRAPPERS.put(boolean.class, Boolean.class);
+        PRIMITIVE_WRAPPERS.put(double.class, Double.class);
+        PRIMITIVE_WRAPPERS.put(float.class, Float.class);
+        PRIMITIVE_WRAPPERS.put(short.class, Short.class);
+        PRIMITIVE_WRAPPERS.put(byte.class, Byte.class);
+        PRIMITIVE_WRAPPERS.put(char.class, Character.class);
+    }
+
+    private static final ThreadLocal<Output> OUTPUT = ThreadLocal.withInitial(Output::new);
+
+    private final BinaryClassRegistry registry;
+
+    public BinaryRedisSerializer(BinaryClassRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public byte[] serialize(T t) throws SerializationException {
+        if (t == null) {
+            return new byte[0];
+        }
+        if(null == registry.get(t.getClass())){
+            return toJsonBytes(t);
+        }
+        Output out = OUTPUT.get();
+        try {
+            out.pos = 0;
+            out.writeByte(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            writeValue(out, t);
+            return Arrays.copyOf(out.buf, out.pos);
+        }catch (IllegalAccessException e){
+            throw new SerializationException("binary serialize error, class : " + t.getClass().getName(), e);
+        }finally {
+            if(out.buf.length > MAX_RETAINED_BUFFER_SIZE){
+                OUTPUT.remove();
+            }
+        }
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length <= 0) {
+            return null;
+        }
+        if(bytes[0] != MAGIC){
+            return (T) JSON.parseObject(new String(bytes, DEFAULT_CHARSET), Object.class);
+        }
+        try {
+            Input in = new Input(bytes);
+            in.pos = 1;
+            byte version = in.readByte();
+            if(version != FORMAT_VERSION){
+                LOGGER.warn("unsupported binary format version {}", version);
+                return null;
+            }
+            return (T) readValue(in);
+        }catch (RuntimeException | ReflectiveOperationException e){
+            LOGGER.warn("binary deserialize error", e);
+            return null;
+        }
+    }
+
+    private void writeValue(Output out, Object v) throws IllegalAccessException {
+        if(null == v){
+            out.writeByte(TYPE_NULL);
+            return;
+        }
+        Class<?> clazz = v.getClass();
+        if(clazz == String.class){
+            out.writeByte(TYPE_STRING);
+            out.writeString((String) v);
+        }else if(clazz == Integer.class){
+            out.writeByte(TYPE_INT);
+            out.writeVarLong(zigzag((Integer) v));
+        }else if(clazz == Long.class){
+            out.writeByte(TYPE_LONG);
+            out.writeVarLong(zigzag((Long) v));
+        }else if(clazz == Boolean.class){
+            out.writeByte((Boolean) v ? TYPE_TRUE : TYPE_FALSE);
+        }else if(clazz == Date.class){
+            out.writeByte(TYPE_DATE);
+            out.writeVarLong(zigzag(((Date) v).getTime()));
+        }else if(clazz == Double.class){
+            out.writeByte(TYPE_DOUBLE);
+            out.writeLong(Double.doubleToLongBits((Double) v));
+        }else if(clazz == Float.class){
+            out.writeByte(TYPE_FLOAT);
+            out.writeVarLong(Float.floatToIntBits((Float) v) & 0xFFFFFFFFL);
+        }else if(clazz == Short.class){
+            out.writeByte(TYPE_SHORT);
+            out.writeVarLong(zigzag((Short) v));
+        }else if(clazz == Byte.class){
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte) v);
+        }else if(clazz == Character.class){
+            out.writeByte(TYPE_CHAR);
+            out.writeVarLong((Character) v);
+        }else if(clazz == BigDecimal.class){
+            out.writeByte(TYPE_BIG_DECIMAL);
+            out.writeString(v.toString());
+        }else if(clazz == BigInteger.class){
+            out.writeByte(TYPE_BIG_INTEGER);
+            out.writeBytes(((BigInteger) v).toByteArray());
+        }else if(clazz == byte[].class){
+            out.writeByte(TYPE_BYTES);
+            out.writeBytes((byte[]) v);
+        }else if(v instanceof List){
+            out.writeByte(TYPE_LIST);
+            writeCollection(out, (Collection<?>) v);
+        }else if(v instanceof Set){
+            out.writeByte(TYPE_SET);
+            writeCollection(out, (Collection<?>) v);
+        }else if(v instanceof Map){
+            out.writeByte(TYPE_MAP);
+            Map<?,?> map = (Map<?,?>) v;
+            out.writeVarLong(map.size());
+            for(Map.Entry<?,?> entry : map.entrySet()){
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }else {
+            ClassMeta meta = registry.get(clazz);
+            if(null == meta){
+                out.writeByte(TYPE_JSON);
+                out.writeBytes(toJsonBytes(v));
+            }else if(meta.isEnum){
+                out.writeByte(TYPE_ENUM);
+                out.writeVarLong(meta.id);
+                out.writeString(((Enum<?>) v).name());
+            }else {
+                writeObject(out, meta, v);
+            }
+        }
+    }
+
+    private void writeCollection(Output out, Collection<?> c) throws IllegalAccessException {
+        out.writeVarLong(c.size());
+        for(Object o : c){
+            writeValue(out, o);
+        }
+    }
+
+    /**
+     * 写入注册类的对象，值为null的字段不写入
+     */
+    private void writeObject(Output out, ClassMeta meta, Object v) throws IllegalAccessException {
+        FieldMeta[] fields = meta.fields;
+        Object[] values = new Object[fields.length];
+        int count = 0;
+        for(int i = 0; i < fields.length; i++){
+            values[i] = fields[i].field.get(v);
+            if(null != values[i]){
+                count++;
+            }
+        }
+        out.writeByte(TYPE_OBJECT);
+        out.writeVarLong(meta.id);
+        out.writeVarLong(count);
+        for(int i = 0; i < fields.length; i++){
+            if(null != values[i]){
+                out.writeVarLong(fields[i].tag & 0xFFFFFFFFL);
+                writeValue(out, values[i]);
+            }
+        }
+    }
+
+    private Object readValue(Input in) throws ReflectiveOperationException {
+        byte type = in.readByte();
+        switch (type){
+            case TYPE_NULL:
+                return null;
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_INT:
+                return (int) unzigzag(in.readVarLong());
+            case TYPE_LONG:
+                return unzigzag(in.readVarLong());
+            case TYPE_SHORT:
+                return (short) unzigzag(in.readVarLong());
+            case TYPE_BYTE:
+                return in.readByte();
+            case TYPE_CHAR:
+                return (char) in.readVarLong();
+            case TYPE_FLOAT:
+                return Float.intBitsToFloat((int) in.readVarLong());
+            case TYPE_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case TYPE_STRING:
+                return in.readString();
+            case TYPE_BYTES:
+                return in.readBytes();
+            case TYPE_BIG_DECIMAL:
+                return new BigDecimal(in.readString());
+            case TYPE_BIG_INTEGER:
+                return new BigInteger(in.readBytes());
+            case TYPE_DATE:
+                return new Date(unzigzag(in.readVarLong()));
+            case TYPE_LIST: {
+                int size = in.readSize();
+                List<Object> list = new ArrayList<>(size);
+                for(int i = 0; i < size; i++){
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case TYPE_SET: {
+                int size = in.readSize();
+                Set<Object> set = new LinkedHashSet<>(size * 4 / 3 + 1);
+                for(int i = 0; i < size; i++){
+                    set.add(readValue(in));
+                }
+                return set;
+            }
+            case TYPE_MAP: {
+                int size = in.readSize();
+                Map<Object, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+                for(int i = 0; i < size; i++){
+                    Object k = readValue(in);
+                    map.put(k, readValue(in));
+                }
+                return map;
+            }
+            case TYPE_ENUM: {
+                ClassMeta meta = meta((int) in.readVarLong());
+                return Enum.valueOf((Class) meta.clazz, in.readString());
+            }
+            case TYPE_OBJECT:
+                return readObject(in, meta((int) in.readVarLong()));
+            case TYPE_JSON:
+                return JSON.parseObject(new String(in.readBytes(), DEFAULT_CHARSET), Object.class);
+            default:
+                throw new SerializationException("unknown binary type " + type);
+        }
+    }
+
+    /**
+     * 读取注册类的对象，跳过不认识的字段
+     */
+    private Object readObject(Input in, ClassMeta meta) throws ReflectiveOperationException {
+        Object obj = meta.newInstance();
+        int count = in.readSize();
+        for(int i = 0; i < count; i++){
+            int tag = (int) in.readVarLong();
+            Object value = readValue(in);
+            FieldMeta field = meta.fieldMap.get(tag);
+            if(null != field && null != value){
+                field.field.set(obj, convert(value, field));
+            }
+        }
+        return obj;
+    }
+
+    /**
+     * 字段类型与读取的值类型不同时转换
+     */
+    private static Object convert(Object value, FieldMeta field){
+        Class<?> type = field.type;
+        if(type.isInstance(value) || (type.isPrimitive() && PRIMITIVE_WRAPPERS.get(type) == value.getClass())){
+            return value;
+        }
+        return TypeUtils.cast(value, field.field.getGenericType(), ParserConfig.getGlobalInstance());
+    }
+
+    private ClassMeta meta(int id){
+        ClassMeta meta = registry.get(id);
+        if(null == meta){
+            throw new SerializationException("unregistered class id " + id);
+        }
+        return meta;
+    }
+
+    private static byte[] toJsonBytes(Object v){
+        return JSON.toJSONString(v, SerializerFeature.WriteClassName).getBytes(DEFAULT_CHARSET);
+    }
+
+    private static long zigzag(long v){
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v){
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * 可扩容的输出缓冲区
+     */
+    private static final class Output {
+        private byte[] buf = new byte[INITIAL_BUFFER_SIZE];
+        private int pos;
+
+        private void ensure(int n){
+            if(pos + n > buf.length){
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + n));
+            }
+        }
+
+        private void writeByte(byte b){
+            ensure(1);
+            buf[pos++] = b;
+        }
+
+        private void writeVarLong(long v){
+            ensure(10);
+            while((v & ~0x7FL) != 0){
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        private void writeLong(long v){
+            ensure(8);
+            for(int i = 56; i >= 0; i -= 8){
+                buf[pos++] = (byte) (v >>> i);
+            }
+        }
+
+        private void writeBytes(byte[] bytes){
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        /**
+         * 直接按UTF-8编码写入缓冲区，不生成中间byte[]
+         */
+        private void writeString(String s){
+            int length = s.length();
+            int utf8Length = 0;
+            for(int i = 0; i < length; i++){
+                char c = s.charAt(i);
+                if(c < 0x80){
+                    utf8Length++;
+                }else if(c < 0x800){
+                    utf8Length += 2;
+                }else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))){
+                    utf8Length += 4;
+                    i++;
+                }else if(Character.isSurrogate(c)){
+                    utf8Length++;
+                }else {
+                    utf8Length += 3;
+                }
+            }
+            writeVarLong(utf8Length);
+            ensure(utf8Length);
+            for(int i = 0; i < length; i++){
+                char c = s.charAt(i);
+                if(c < 0x80){
+                    buf[pos++] = (byte) c;
+                }else if(c < 0x800){
+                    buf[pos++] = (byte) (0xC0 | (c >> 6));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3F));
+                }else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))){
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+                }else {
+                    //单独的代理字符与String.getBytes相同写入'?'
+                    if(Character.isSurrogate(c)){
+                        buf[pos++] = '?';
+                        continue;
+                    }
+                    buf[pos++] = (byte) (0xE0 | (c >> 12));
+                    buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+    }
+
+    /**
+     * 输入
+     */
+    private static final class Input {
+        private final byte[] buf;
+        private int pos;
+
+        private Input(byte[] buf) {
+            this.buf = buf;
+        }
+
+        private byte readByte(){
+            if(pos >= buf.length){
+                throw new SerializationException("binary data is truncated");
+            }
+            return buf[pos++];
+        }
+
+        private long readVarLong(){
+            long v = 0L;
+            for(int shift = 0; shift < 64; shift += 7){
+                byte b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if((b & 0x80) == 0){
+                    return v;
+                }
+            }
+            throw new SerializationException("malformed varint");
+        }
+
+        private int readSize(){
+            long size = readVarLong();
+            if(size < 0 || size > buf.length - pos){
+                throw new SerializationException("invalid size " + size);
+            }
+            return (int) size;
+        }
+
+        private long readLong(){
+            long v = 0L;
+            for(int i = 0; i < 8; i++){
+                v = (v << 8) | (readByte() & 0xFF);
+            }
+            return v;
+        }
+
+        private byte[] readBytes(){
+            int size = readSize();
+            byte[] bytes = Arrays.copyOfRange(buf, pos, pos + size);
+            pos += size;
+            return bytes;
+        }
+
+        private String readString(){
+            int size = readSize();
+            String s = new String(buf, pos, size, DEFAULT_CHARSET);
+            pos += size;
+            return s;
+        }
+    }
+}
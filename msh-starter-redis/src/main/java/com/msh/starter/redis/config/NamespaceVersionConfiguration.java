@@ -0,0 +1,52 @@
+package com.msh.starter.redis.config;
+
+import com.msh.starter.redis.cache.NamespaceVersionRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 命名空间版本号配置
+ * msh.redis.namespace-version.enabled=true 时开启
+ * msh.redis.namespace-version.namespaces 使用版本号的key前缀，逗号分隔 默认list:,list_one:,count:
+ * msh.redis.namespace-version.refresh-millis 本地版本号刷新间隔 默认1000毫秒
+ * msh.redis.namespace-version.channel 版本号变更通知通道
+ * msh.redis.namespace-version.clear-old 增加版本号后是否在后台删除旧版本的key 默认false
+ *   为false时旧版本的key一直占用内存直到过期(默认30天)，频繁增加版本号时内存会持续增长
+ *   为true时每次删除都SCAN全部key，同一命名空间合并执行
+ * msh.redis.namespace-version.clear-old-interval-millis 同一命名空间两次删除旧版本的最小间隔 默认60000毫秒
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "msh.redis.namespace-version", name = "enabled", havingValue = "true")
+public class NamespaceVersionConfiguration {
+
+    @Bean
+    public NamespaceVersionRegistry namespaceVersionRegistry(RedisTemplate redisTemplate,
+                                                             @Value("${msh.redis.namespace-version.namespaces:list:,list_one:,count:}") String[] namespaces,
+                                                             @Value("${msh.redis.namespace-version.refresh-millis:1000}") long refreshMillis,
+                                                             @Value("${msh.redis.namespace-version.channel:msh:namespace-version}") String channel,
+                                                             @Value("${msh.redis.namespace-version.clear-old:false}") boolean clearOld,
+                                                             @Value("${msh.redis.namespace-version.clear-old-interval-millis:60000}") long clearOldIntervalMillis) {
+        List<String> list = new ArrayList<>(Arrays.asList(namespaces));
+        list.remove("");
+        return new NamespaceVersionRegistry(redisTemplate, list, refreshMillis, channel, clearOld, clearOldIntervalMillis);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer namespaceVersionListenerContainer(RedisConnectionFactory factory,
+                                                                           NamespaceVersionRegistry namespaceVersionRegistry) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener(namespaceVersionRegistry, new ChannelTopic(namespaceVersionRegistry.getChannel()));
+        return container;
+    }
+}
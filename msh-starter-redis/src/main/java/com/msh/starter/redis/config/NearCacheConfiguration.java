@@ -0,0 +1,50 @@
+package com.msh.starter.redis.config;
+
+import com.msh.starter.redis.cache.NearCacheInvalidator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 两级缓存配置
+ * msh.redis.near-cache.enabled=true 时开启，需要引入caffeine
+ * msh.redis.near-cache.cache-names 使用两级缓存的缓存名称，逗号分隔，不配置时全部使用
+ * msh.redis.near-cache.maximum-size 每个本地缓存最大个数 默认10000
+ * msh.redis.near-cache.expire-second 本地缓存过期时间 默认60秒
+ * msh.redis.near-cache.channel 失效通知通道
+ */
+@Configuration
+@ConditionalOnClass(name = "com.github.benmanes.caffeine.cache.Caffeine")
+@ConditionalOnProperty(prefix = "msh.redis.near-cache", name = "enabled", havingValue = "true")
+public class NearCacheConfiguration {
+
+    @Bean
+    public NearCacheInvalidator nearCacheInvalidator(RedisTemplate redisTemplate,
+                                                     @Value("${msh.redis.near-cache.channel:msh:near-cache:invalidate}") String channel,
+                                                     @Value("${msh.redis.near-cache.cache-names:}") String[] cacheNames,
+                                                     @Value("${msh.redis.near-cache.maximum-size:10000}") long maximumSize,
+                                                     @Value("${msh.redis.near-cache.expire-second:60}") long expireSecond) {
+        Set<String> names = new HashSet<>(Arrays.asList(cacheNames));
+        names.remove("");
+        return new NearCacheInvalidator(redisTemplate, channel, names, maximumSize, expireSecond);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer nearCacheListenerContainer(RedisConnectionFactory factory,
+                                                                    NearCacheInvalidator nearCacheInvalidator) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener(nearCacheInvalidator, new ChannelTopic(nearCacheInvalidator.getChannel()));
+        return container;
+    }
+}
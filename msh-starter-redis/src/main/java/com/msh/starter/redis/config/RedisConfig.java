@@ -1,7 +1,11 @@
 package com.msh.starter.redis.config;
 
 import com.alibaba.fastjson.parser.ParserConfig;
+import com.msh.starter.redis.cache.RedisPrefixCleaner;
+import com.msh.starter.redis.common.BinaryClassRegistry;
+import com.msh.starter.redis.common.BinaryRedisSerializer;
 import com.msh.starter.redis.common.FastJson2JsonRedisSerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,6 +13,8 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
 
 @Configuration
 public class RedisConfig {
@@ -21,16 +27,53 @@ public class RedisConfig {
         return new FastJson2JsonRedisSerializer<Object>(Object.class);
     }
 
+    /**
+     * 二进制序列化的类注册表
+     * msh.redis.binary.classes 注册的类 格式: 类id:类名,类id:类名
+     * 也可以注入后调用register注册
+     * @param classes
+     * @return
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public BinaryClassRegistry binaryClassRegistry(@Value("${msh.redis.binary.classes:}") String classes) throws ClassNotFoundException {
+        BinaryClassRegistry registry = new BinaryClassRegistry();
+        for(String item : StringUtils.commaDelimitedListToStringArray(classes)){
+            item = item.trim();
+            if(item.isEmpty()){
+                continue;
+            }
+            int index = item.indexOf(':');
+            if(index <= 0){
+                throw new IllegalArgumentException("msh.redis.binary.classes format error: " + item);
+            }
+            registry.register(Integer.parseInt(item.substring(0, index).trim()),
+                    ClassUtils.forName(item.substring(index + 1).trim(), ClassUtils.getDefaultClassLoader()));
+        }
+        return registry;
+    }
+
     /**
      * RedisTemplate配置
+     * msh.redis.value-serializer value的序列化方式 json或binary 默认json
+     * 其他RedisTemplate需要二进制序列化时使用 new BinaryRedisSerializer(binaryClassRegistry) 设置
+     * ---------------------------------------------------------------
+     * 注: 只能单向兼容
+     * binary可以读取json写入的数据，从json切换为binary时不需要清理缓存
+     * json不能读取binary写入的数据(注册类的值以0xB1开头)，滚动发布期间或回滚到json时，
+     * 仍使用json的服务读取这些值会失败，需要先清理注册类的缓存或等待缓存过期
      * @param factory
      * @return
      */
     @Bean
-    public RedisTemplate<String, String> redisTemplate(RedisConnectionFactory factory, RedisSerializer fastJson2JsonRedisSerializer) {
+    public RedisTemplate<String, String> redisTemplate(RedisConnectionFactory factory, RedisSerializer fastJson2JsonRedisSerializer,
+                                                       BinaryClassRegistry binaryClassRegistry,
+                                                       @Value("${msh.redis.value-serializer:json}") String valueSerializer) {
+        RedisSerializer serializer = "binary".equalsIgnoreCase(valueSerializer)
+                ? new BinaryRedisSerializer<Object>(binaryClassRegistry) : fastJson2JsonRedisSerializer;
         StringRedisTemplate template = new StringRedisTemplate(factory);
-        template.setValueSerializer(fastJson2JsonRedisSerializer);
-        template.setHashValueSerializer(fastJson2JsonRedisSerializer);
+        template.setValueSerializer(serializer);
+        template.setHashValueSerializer(serializer);
         template.afterPropertiesSet();
         return template;
 
@@ -49,4 +92,21 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;*/
     }
+
+    /**
+     * 按前缀删除key
+     * msh.redis.clear.scan-count 每次SCAN的COUNT 默认1000
+     * msh.redis.clear.batch-size 每次UNLINK的key数 默认500
+     * msh.redis.clear.async 是否异步删除 默认false
+     * @param redisTemplate
+     * @return
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisPrefixCleaner redisPrefixCleaner(RedisTemplate redisTemplate,
+                                                 @Value("${msh.redis.clear.scan-count:1000}") long scanCount,
+                                                 @Value("${msh.redis.clear.batch-size:500}") int batchSize,
+                                                 @Value("${msh.redis.clear.async:false}") boolean async) {
+        return new RedisPrefixCleaner(redisTemplate, scanCount, batchSize, async);
+    }
 }